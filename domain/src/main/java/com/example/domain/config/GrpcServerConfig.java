@@ -0,0 +1,30 @@
+package com.example.domain.config;
+
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class GrpcServerConfig {
+
+    /**
+     * With {@code spring.threads.virtual.enabled=true} every gRPC call runs on its own virtual thread,
+     * so calls blocked on JPA no longer tie up the server's default cached thread pool.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ExecutorService grpcServerExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public GrpcServerConfigurer virtualThreadGrpcServerConfigurer(ExecutorService grpcServerExecutor) {
+        return serverBuilder -> serverBuilder.executor(grpcServerExecutor);
+    }
+}
@@ -1,14 +1,29 @@
 package com.example.domain.config;
 
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.amqp.rabbit.listener.adapter.MessageListenerAdapter;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitRetryTemplateCustomizer;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Configuration
 public class RabbitMQConfig {
@@ -23,11 +38,103 @@ public class RabbitMQConfig {
 
     public static final String directExchangeName = "recipeExchange";
 
+    // Content type of RecipeProto.RecipeCommand messages; anything else is read as a legacy JSON/raw message
+    public static final String recipeCommandContentType = "application/x-protobuf";
+    public static final int recipeCommandVersion = 1;
+    // Epoch millis at which the publisher handed the command to the broker, for queue dwell time on the consumer
+    public static final String recipeCommandPublishedAtHeader = "x-published-at";
+
+    public static final String batchListenerContainerFactoryName = "batchListenerContainerFactory";
+
+    // Partitioned command stream: every write for a recipe goes to the same queue, so it is applied in order
+    public static final String recipeCommandExchangeName = "recipeCommandExchange";
+    public static final String recipeCommandQueuePrefix = "recipeCommandQueue.";
+    public static final String recipeCommandRoutingKeyPrefix = "recipe.command.";
+
+    // Committed-write events (RecipeProto.RecipeEvent); every consumer binds its own queue
+    public static final String recipeEventExchangeName = "recipeEventExchange";
+
+    // Recipe commands that failed after all listener retries, or can never be applied, end up here
+    public static final String recipeDeadLetterExchangeName = "recipeDeadLetterExchange";
+    public static final String recipeDeadLetterQueueName = "recipeDeadLetterQueue";
+
+    /**
+     * Partition of a recipe's commands. Must match the gateway's implementation, since both publish.
+     */
+    public static int recipeCommandPartition(String recipeId, int partitions) {
+        return Math.floorMod(recipeId.toLowerCase(Locale.ROOT).hashCode(), partitions);
+    }
+
+    public static String recipeCommandRoutingKey(int partition) {
+        return recipeCommandRoutingKeyPrefix + partition;
+    }
+
+    public static String recipeCommandQueueName(int partition) {
+        return recipeCommandQueuePrefix + partition;
+    }
+
     @Bean
     public MessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
     }
 
+    /**
+     * Container factory for the batching consumer mode: a batch is handed to the listener as soon as
+     * it reaches {@code max-size} messages or {@code max-linger-ms} has passed since its first message.
+     */
+    @Bean(batchListenerContainerFactoryName)
+    @ConditionalOnProperty(name = "recipe.consumer.batch.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${recipe.consumer.batch.max-size:500}") int maxSize,
+            @Value("${recipe.consumer.batch.max-linger-ms:50}") long maxLingerMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(maxSize);
+        factory.setBatchReceiveTimeout(maxLingerMs);
+        factory.setPrefetchCount(maxSize);
+        return factory;
+    }
+
+    /**
+     * Once the listener retries ({@code spring.rabbitmq.listener.simple.retry}) are used up, the message is
+     * rejected without requeue, so the broker dead-letters it. In batch mode the whole batch is rejected:
+     * the default recoverer only handles single messages and would let a failed batch be acked.
+     */
+    @Bean
+    public MessageRecoverer rejectToDeadLetterRecoverer() {
+        return new MessageBatchRecoverer() {
+            @Override
+            public void recover(Message message, Throwable cause) {
+                recover(List.of(message), cause);
+            }
+
+            @Override
+            public void recover(List<Message> messages, Throwable cause) {
+                throw new ListenerExecutionFailedException("Retries exhausted for recipe commands",
+                        new AmqpRejectAndDontRequeueException(cause), messages.toArray(Message[]::new));
+            }
+        };
+    }
+
+    /**
+     * Messages rejected with {@link AmqpRejectAndDontRequeueException} (undecodable, unknown envelope
+     * version) cannot succeed on a retry, so they are dead-lettered right away.
+     */
+    @Bean
+    public RabbitRetryTemplateCustomizer listenerRetryPolicy(
+            @Value("${spring.rabbitmq.listener.simple.retry.max-attempts:3}") int maxAttempts) {
+        return (target, retryTemplate) -> {
+            if (target == RabbitRetryTemplateCustomizer.Target.LISTENER) {
+                retryTemplate.setRetryPolicy(new SimpleRetryPolicy(maxAttempts,
+                        Map.of(AmqpRejectAndDontRequeueException.class, false), true, true));
+            }
+        };
+    }
+
     @Bean
     public DirectExchange exchange() {
         return ExchangeBuilder.directExchange(directExchangeName)
@@ -35,6 +142,74 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    @Bean
+    public DirectExchange recipeCommandExchange() {
+        return ExchangeBuilder.directExchange(recipeCommandExchangeName)
+                .durable(true)
+                .build();
+    }
+
+    @Bean
+    public FanoutExchange recipeEventExchange() {
+        return ExchangeBuilder.fanoutExchange(recipeEventExchangeName)
+                .durable(true)
+                .build();
+    }
+
+    // One auto-delete queue per domain instance, so the in-memory views of every instance see every write
+    @Bean
+    public Queue recipeEventLocalQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding recipeEventLocalBinding(Queue recipeEventLocalQueue, FanoutExchange recipeEventExchange) {
+        return BindingBuilder.bind(recipeEventLocalQueue).to(recipeEventExchange);
+    }
+
+    @Bean
+    public FanoutExchange recipeDeadLetterExchange() {
+        return ExchangeBuilder.fanoutExchange(recipeDeadLetterExchangeName)
+                .durable(true)
+                .build();
+    }
+
+    @Bean
+    public Queue recipeDeadLetterQueue() {
+        return QueueBuilder.durable(recipeDeadLetterQueueName).build();
+    }
+
+    @Bean
+    public Binding recipeDeadLetterBinding(Queue recipeDeadLetterQueue, FanoutExchange recipeDeadLetterExchange) {
+        return BindingBuilder.bind(recipeDeadLetterQueue).to(recipeDeadLetterExchange);
+    }
+
+    /**
+     * One queue per partition. Single active consumer keeps one consumer per partition across all
+     * domain instances, with another instance taking over when it goes away.
+     */
+    @Bean
+    public Declarables recipeCommandPartitions(DirectExchange recipeCommandExchange,
+                                               @Value("${recipe.commands.partitions:4}") int partitions) {
+        List<Declarable> declarables = new ArrayList<>(partitions * 2);
+        for (int partition = 0; partition < partitions; partition++) {
+            Queue queue = QueueBuilder.durable(recipeCommandQueueName(partition))
+                    .singleActiveConsumer()
+                    .deadLetterExchange(recipeDeadLetterExchangeName)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(recipeCommandExchange).with(recipeCommandRoutingKey(partition)));
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * The legacy queues keep the arguments they were first declared with: redeclaring an existing queue with
+     * different arguments fails with PRECONDITION_FAILED. Dead-lettering for them comes from a broker policy, e.g.
+     * {@code rabbitmqctl set_policy recipe-legacy-dlx "^recipe(Post|Put|Delete)RequestQueue$"
+     * '{"dead-letter-exchange":"recipeDeadLetterExchange"}' --apply-to queues}; without it, a command rejected
+     * after its retries is dropped.
+     */
     @Bean
     public Queue recipePostRequestQueue() {
         return QueueBuilder.durable(recipePostRequestQueueName).build();
@@ -51,17 +226,17 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public Binding postRequestBinding(Queue recipePostRequestQueue, DirectExchange directExchange) {
-        return BindingBuilder.bind(recipePostRequestQueue).to(directExchange).with(recipePostRequestQueueRoutingKey);
+    public Binding postRequestBinding(Queue recipePostRequestQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(recipePostRequestQueue).to(exchange).with(recipePostRequestQueueRoutingKey);
     }
 
     @Bean
-    public Binding putRequestBinding(Queue recipePutRequestQueue, DirectExchange directExchange) {
-        return BindingBuilder.bind(recipePutRequestQueue).to(directExchange).with(recipePutRequestQueueRoutingKey);
+    public Binding putRequestBinding(Queue recipePutRequestQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(recipePutRequestQueue).to(exchange).with(recipePutRequestQueueRoutingKey);
     }
 
     @Bean
-    public Binding deleteRequestBinding(Queue recipeDeleteRequestQueue, DirectExchange directExchange) {
-        return BindingBuilder.bind(recipeDeleteRequestQueue).to(directExchange).with(recipeDeleteRequestQueueRoutingKey);
+    public Binding deleteRequestBinding(Queue recipeDeleteRequestQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(recipeDeleteRequestQueue).to(exchange).with(recipeDeleteRequestQueueRoutingKey);
     }
 }
@@ -0,0 +1,157 @@
+package com.example.domain.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions (Spring Data's {@code findById}, {@code findAll}, derived queries, ...)
+ * to a read replica, round robin, and everything else to the primary. A replica is only used while its
+ * last check succeeded and its replay lag was within {@code maxLag}; with none usable, reads fall back
+ * to the primary. Must sit behind a {@code LazyConnectionDataSourceProxy}, so the connection is only
+ * fetched once the transaction's read-only flag is known.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String PRIMARY_LSN_SQL = "SELECT pg_current_wal_lsn()::text";
+    // Replay lag in seconds; 0 when the replica has replayed the primary's WAL up to the given position, read
+    // from the primary just before. Null on a primary. Compared with the primary rather than with what the replica
+    // received, so a replica whose WAL receiver is disconnected does not count as caught up.
+    private static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN NULL " +
+            "WHEN pg_last_wal_replay_lsn() >= ?::pg_lsn THEN 0 " +
+            "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryFallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, HikariDataSource> replicas,
+                                    Duration maxLag, MeterRegistry meterRegistry) {
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.primaryJdbcTemplate.setQueryTimeout(2);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            targets.put(name, dataSource);
+            Gauge.builder("recipe.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Replay lag of a read replica at its last check")
+                    .baseUnit("seconds")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+            Gauge.builder("recipe.datasource.replica.usable", replica, r -> r.usable(maxLagSeconds) ? 1 : 0)
+                    .description("Whether a read replica currently receives reads")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+        this.primaryFallbacks = Counter.builder("recipe.datasource.replica.fallbacks")
+                .description("Read-only connections taken from the primary because no replica was usable")
+                .register(meterRegistry);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || replicas.isEmpty()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.usable(maxLagSeconds)) {
+                return replica.name;
+            }
+        }
+        primaryFallbacks.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Checks every replica's health and replay lag; a replica that cannot be reached, or that is not in
+     * recovery (e.g. it was promoted), stops receiving reads until a later check succeeds. Replicas start
+     * out unusable, so reads stay on the primary until the first check has run. While the primary cannot be
+     * reached, the lag is the time since each replica last replayed a transaction.
+     */
+    @Scheduled(fixedDelayString = "${recipe.datasource.replicas.check-interval:PT5S}")
+    public void checkReplicas() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        String primaryLsn = null;
+        try {
+            primaryLsn = primaryJdbcTemplate.queryForObject(PRIMARY_LSN_SQL, String.class);
+        } catch (Exception e) {
+            log.warn("Could not read the primary's WAL position: {}", e.getMessage());
+        }
+        SqlParameterValue caughtUpAt = new SqlParameterValue(Types.VARCHAR, primaryLsn);
+        for (Replica replica : replicas) {
+            boolean wasUsable = replica.usable(maxLagSeconds);
+            try {
+                Double lag = replica.jdbcTemplate.queryForObject(LAG_SQL, Double.class, caughtUpAt);
+                replica.healthy = lag != null;
+                replica.lagSeconds = lag == null ? 0 : lag;
+                if (lag == null) {
+                    log.warn("Replica {} is not in recovery, not routing reads to it", replica.name);
+                }
+            } catch (Exception e) {
+                replica.healthy = false;
+                log.warn("Replica {} check failed: {}", replica.name, e.getMessage());
+            }
+            boolean usable = replica.usable(maxLagSeconds);
+            if (usable != wasUsable) {
+                log.info("Replica {} {} reads (lag {} s)", replica.name, usable ? "now receives" : "no longer receives",
+                        replica.lagSeconds);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean healthy;
+        private volatile double lagSeconds;
+
+        private Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.jdbcTemplate.setQueryTimeout(2);
+        }
+
+        private boolean usable(double maxLagSeconds) {
+            return healthy && lagSeconds <= maxLagSeconds;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.domain.grpc;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Marshaller for messages that are already protobuf-encoded: the bytes are written to the transport
+ * as they are, without a copy into an intermediate buffer.
+ */
+final class EncodedMessageMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+    static final EncodedMessageMarshaller INSTANCE = new EncodedMessageMarshaller();
+
+    private EncodedMessageMarshaller() {
+    }
+
+    @Override
+    public InputStream stream(byte[] value) {
+        return new EncodedMessageStream(value);
+    }
+
+    @Override
+    public byte[] parse(InputStream stream) {
+        try {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Failed to read message").withCause(e).asRuntimeException();
+        }
+    }
+
+    private static final class EncodedMessageStream extends ByteArrayInputStream implements KnownLength, Drainable {
+
+        private EncodedMessageStream(byte[] value) {
+            super(value);
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int length = count - pos;
+            target.write(buf, pos, length);
+            pos = count;
+            return length;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.domain.grpc;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sheds load on the RecipeService before it piles up in front of Postgres. Unary calls are admitted
+ * while fewer than the current limit are in flight; beyond it they fail fast with {@code UNAVAILABLE},
+ * which the gateway's hedging sends on to another instance. The limit adapts to latency (gradient style):
+ * it grows while recent latency stays near the long-term average and shrinks as it rises above it, i.e.
+ * as calls start queueing for connections. Low-priority methods (full scans such as ListRecipes) may only
+ * fill part of the limit, so cheap lookups like GetRecipe still get through under load. Calls whose
+ * remaining deadline is shorter than the method's typical service time are rejected up front with
+ * {@code DEADLINE_EXCEEDED} instead of using a slot for an answer nobody waits for.
+ * <p>
+ * Streaming calls are not limited: their duration depends on the client, not on the service.
+ */
+@Slf4j
+@GrpcGlobalServerInterceptor
+@ConditionalOnProperty(name = "recipe.grpc.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class RecipeConcurrencyLimiter implements ServerInterceptor {
+
+    // Latency averages over roughly the last 10 and 600 samples
+    private static final double SHORT_RTT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_RTT_ALPHA = 2.0 / (600 + 1);
+    private static final double SERVICE_TIME_ALPHA = 2.0 / (100 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double lowPriorityShare;
+    private final Set<String> lowPriorityMethods;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, ServiceTime> serviceTimes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    private volatile double limit;
+    // Guarded by this
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public RecipeConcurrencyLimiter(MeterRegistry meterRegistry,
+                                    @Value("${recipe.grpc.limiter.initial-limit:20}") int initialLimit,
+                                    @Value("${recipe.grpc.limiter.min-limit:4}") int minLimit,
+                                    @Value("${recipe.grpc.limiter.max-limit:200}") int maxLimit,
+                                    @Value("${recipe.grpc.limiter.tolerance:1.5}") double tolerance,
+                                    @Value("${recipe.grpc.limiter.smoothing:0.2}") double smoothing,
+                                    @Value("${recipe.grpc.limiter.low-priority-share:0.5}") double lowPriorityShare,
+                                    @Value("${recipe.grpc.limiter.low-priority-methods:ListRecipes,SearchRecipes}") List<String> lowPriorityMethods) {
+        this.meterRegistry = meterRegistry;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.lowPriorityShare = lowPriorityShare;
+        this.lowPriorityMethods = Set.copyOf(lowPriorityMethods.stream().map(String::trim).toList());
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+        Gauge.builder("recipe.grpc.limiter.limit", this, l -> l.limit)
+                .description("Current adaptive concurrency limit of the gRPC server")
+                .register(meterRegistry);
+        Gauge.builder("recipe.grpc.limiter.in_flight", inFlight, AtomicInteger::get)
+                .description("Limited gRPC calls currently in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        if (method.getType() != MethodDescriptor.MethodType.UNARY
+                || !RecipeServiceGrpc.SERVICE_NAME.equals(method.getServiceName())) {
+            return next.startCall(call, headers);
+        }
+        String methodName = method.getBareMethodName();
+
+        Deadline deadline = Context.current().getDeadline();
+        ServiceTime serviceTime = serviceTimes.computeIfAbsent(methodName, name -> new ServiceTime());
+        if (deadline != null && deadline.timeRemaining(TimeUnit.NANOSECONDS) < serviceTime.nanos) {
+            return reject(call, methodName, "deadline",
+                    Status.DEADLINE_EXCEEDED.withDescription("Deadline shorter than typical service time"));
+        }
+
+        boolean lowPriority = lowPriorityMethods.contains(methodName);
+        if (!tryAcquire(lowPriority ? limit * lowPriorityShare : limit)) {
+            return reject(call, methodName, "limit",
+                    Status.UNAVAILABLE.withDescription("Server overloaded, concurrency limit reached"));
+        }
+
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (released.compareAndSet(false, true)) {
+                    onCallDone(serviceTime, status, System.nanoTime() - start);
+                }
+                super.close(status, trailers);
+            }
+        };
+        try {
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(limitedCall, headers)) {
+                // Cancelled by the client or its deadline: the slot is free, the latency says nothing
+                @Override
+                public void onCancel() {
+                    if (released.compareAndSet(false, true)) {
+                        inFlight.decrementAndGet();
+                    }
+                    super.onCancel();
+                }
+            };
+        } catch (RuntimeException e) {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+            throw e;
+        }
+    }
+
+    private boolean tryAcquire(double allowed) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void onCallDone(ServiceTime serviceTime, Status status, long latencyNanos) {
+        int callsInFlight = inFlight.getAndDecrement();
+        switch (status.getCode()) {
+            // Latency of calls that were not served says nothing about the service time
+            case CANCELLED, DEADLINE_EXCEEDED, UNAVAILABLE -> {
+            }
+            default -> {
+                serviceTime.update(latencyNanos);
+                updateLimit(latencyNanos, callsInFlight);
+            }
+        }
+    }
+
+    private synchronized void updateLimit(long latencyNanos, int callsInFlight) {
+        if (longRttNanos == 0) {
+            shortRttNanos = latencyNanos;
+            longRttNanos = latencyNanos;
+            return;
+        }
+        shortRttNanos += SHORT_RTT_ALPHA * (latencyNanos - shortRttNanos);
+        longRttNanos += LONG_RTT_ALPHA * (latencyNanos - longRttNanos);
+        // Latency dropped well below the long-term average (e.g. Postgres recovered): let the average follow faster
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        double current = limit;
+        // Far below the limit the calls are not competing for anything, so latency cannot tell us about it
+        if (callsInFlight < current / 2) {
+            return;
+        }
+        double gradient = Math.clamp(tolerance * longRttNanos / shortRttNanos, 0.5, 1.0);
+        double target = current * gradient + Math.sqrt(current);
+        double updated = Math.clamp(current * (1 - smoothing) + target * smoothing, minLimit, maxLimit);
+        if ((int) updated != (int) current) {
+            log.debug("Concurrency limit {} -> {} (short rtt {} ms, long rtt {} ms)", (int) current, (int) updated,
+                    shortRttNanos / 1e6, longRttNanos / 1e6);
+        }
+        limit = updated;
+    }
+
+    private <ReqT, RespT> ServerCall.Listener<ReqT> reject(ServerCall<ReqT, RespT> call, String method,
+                                                            String reason, Status status) {
+        rejections.computeIfAbsent(method + ':' + reason, key -> Counter.builder("recipe.grpc.limiter.rejections")
+                        .description("gRPC calls rejected by the concurrency limiter")
+                        .tag("method", method)
+                        .tag("reason", reason)
+                        .register(meterRegistry))
+                .increment();
+        call.close(status, new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+
+    // Typical latency of one method; 0 until it has been served once, so nothing is rejected on deadline before
+    private static final class ServiceTime {
+
+        private volatile double nanos;
+
+        private synchronized void update(long latencyNanos) {
+            nanos = nanos == 0 ? latencyNanos : nanos + SERVICE_TIME_ALPHA * (latencyNanos - nanos);
+        }
+    }
+}
@@ -1,31 +1,52 @@
 package com.example.domain.grpc;
 
-import com.example.domain.config.RabbitMQConfig;
 import com.example.domain.recipe.Recipe;
 import com.example.domain.recipe.RecipeRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.domain.recipe.RecipeSearchCriteria;
+import com.example.domain.service.IngredientIndex;
+import com.example.domain.service.RecipeCommandPublisher;
+import com.example.domain.service.RecipeEventPublisher;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
-import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * The recipe gRPC service; registered with the server through {@link RecipeGrpcServiceBinding}.
+ */
 @Slf4j
-@GrpcService
+@Component
 public class RecipeGrpcService extends RecipeServiceGrpc.RecipeServiceImplBase {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_STREAM_BATCH_SIZE = 500;
+
     private final RecipeRepository recipeRepository;
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private final RecipeCommandPublisher commandPublisher;
+    private final IngredientIndex ingredientIndex;
+    private final RecipeEventPublisher eventPublisher;
 
-    public RecipeGrpcService(RecipeRepository recipeRepository, RabbitTemplate rabbitTemplate, ObjectMapper objectMapper) {
+    public RecipeGrpcService(RecipeRepository recipeRepository,
+                             RecipeCommandPublisher commandPublisher,
+                             IngredientIndex ingredientIndex,
+                             RecipeEventPublisher eventPublisher) {
         this.recipeRepository = recipeRepository;
-        this.rabbitTemplate = rabbitTemplate;
-        this.objectMapper = objectMapper;
+        this.commandPublisher = commandPublisher;
+        this.ingredientIndex = ingredientIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -34,33 +55,53 @@ public class RecipeGrpcService extends RecipeServiceGrpc.RecipeServiceImplBase {
         log.info("Received GET request for ID: {}", request.getId());
         Recipe recipe = recipeRepository.findById(UUID.fromString(request.getId()))
                 .orElseThrow(() -> new RuntimeException("Recipe not found"));
-        RecipeProto.Recipe grpcRecipe = RecipeProto.Recipe.newBuilder()
-                .setId(recipe.getId().toString())
-                .setName(recipe.getName())
-                .setIngredients(recipe.getIngredients())
-                .setCookingTime(recipe.getCookingTime())
-                .build();
-
         RecipeProto.RecipeResponse response = RecipeProto.RecipeResponse.newBuilder()
-                .setRecipe(grpcRecipe)
+                .setRecipe(toGrpcRecipe(recipe))
                 .build();
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
+    /**
+     * Multi-get in one {@code WHERE id IN (...)} query; recipes come back in request order, unknown ids are skipped.
+     */
+    @Override
+    @Timed(value = "grpc.get_recipes", description = "Time taken to get recipes by IDs")
+    public void getRecipes(RecipeProto.RecipeIdsRequest request, StreamObserver<RecipeProto.RecipeListResponse> responseObserver) {
+        log.info("Received GET request for {} IDs", request.getIdsCount());
+        if (request.getIdsCount() > MAX_PAGE_SIZE) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At most " + MAX_PAGE_SIZE + " IDs per request").asRuntimeException());
+            return;
+        }
+        List<UUID> ids;
+        try {
+            ids = request.getIdsList().stream().map(UUID::fromString).distinct().toList();
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        Map<UUID, Recipe> recipes = recipeRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+        RecipeProto.RecipeListResponse.Builder response = RecipeProto.RecipeListResponse.newBuilder();
+        for (UUID id : ids) {
+            Recipe recipe = recipes.get(id);
+            if (recipe != null) {
+                response.addRecipes(toGrpcRecipe(recipe));
+            }
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     @Timed(value = "grpc.list_recipes", description = "Time taken to list all recipes")
     public void listRecipes(RecipeProto.Empty request, StreamObserver<RecipeProto.RecipeListResponse> responseObserver) {
         log.info("Received LIST request for all recipes");
 
         List<RecipeProto.Recipe> grpcRecipes = recipeRepository.findAll().stream()
-                .map(recipe -> RecipeProto.Recipe.newBuilder()
-                        .setId(recipe.getId().toString())
-                        .setName(recipe.getName())
-                        .setIngredients(recipe.getIngredients())
-                        .setCookingTime(recipe.getCookingTime())
-                        .build())
+                .map(this::toGrpcRecipe)
                 .collect(Collectors.toList());
 
         RecipeProto.RecipeListResponse response = RecipeProto.RecipeListResponse.newBuilder()
@@ -71,14 +112,150 @@ public class RecipeGrpcService extends RecipeServiceGrpc.RecipeServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    @Timed(value = "grpc.list_recipes_page", description = "Time taken to list one page of recipes")
+    public void listRecipesPage(RecipeProto.RecipePageRequest request, StreamObserver<RecipeProto.RecipePageResponse> responseObserver) {
+        log.info("Received LIST PAGE request: limit={}, after='{}'", request.getLimit(), request.getAfter());
+        UUID after;
+        try {
+            after = parseCursor(request.getAfter());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid cursor: " + request.getAfter()).asRuntimeException());
+            return;
+        }
+        int limit = pageSize(request.getLimit(), DEFAULT_PAGE_SIZE);
+
+        // Fetch one extra row to know whether another page follows without a second query
+        List<Recipe> recipes = findPage(after, limit + 1);
+        responseObserver.onNext(toPageResponse(recipes, limit));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    @Timed(value = "grpc.search_recipes", description = "Time taken to search recipes")
+    public void searchRecipes(RecipeProto.RecipeSearchRequest request, StreamObserver<RecipeProto.RecipePageResponse> responseObserver) {
+        log.info("Received SEARCH request: {}", request);
+        UUID after;
+        try {
+            after = parseCursor(request.getAfter());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid cursor: " + request.getAfter()).asRuntimeException());
+            return;
+        }
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(
+                request.getNamePrefix(),
+                request.getText(),
+                request.getIngredientsList(),
+                request.getMinCookingTime() > 0 ? request.getMinCookingTime() : null,
+                request.getMaxCookingTime() > 0 ? request.getMaxCookingTime() : null);
+        int limit = pageSize(request.getLimit(), DEFAULT_PAGE_SIZE);
+
+        List<Recipe> recipes = recipeRepository.search(criteria, after, limit + 1);
+        responseObserver.onNext(toPageResponse(recipes, limit));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    @Timed(value = "grpc.query_by_ingredients", description = "Time taken to query recipes by ingredients")
+    public void queryByIngredients(RecipeProto.IngredientQuery request, StreamObserver<RecipeProto.IngredientQueryResponse> responseObserver) {
+        log.info("Received INGREDIENT QUERY request: {}", request);
+        IngredientIndex.Result result = ingredientIndex.query(
+                request.getAllList(), request.getAnyList(), request.getNoneList(),
+                pageSize(request.getLimit(), DEFAULT_PAGE_SIZE));
+        responseObserver.onNext(RecipeProto.IngredientQueryResponse.newBuilder()
+                .addAllRecipeIds(result.recipeIds().stream().map(UUID::toString).toList())
+                .setTotal(result.total())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void streamRecipes(RecipeProto.RecipePageRequest request, StreamObserver<RecipeProto.Recipe> responseObserver) {
+        log.info("Received STREAM request for recipes after '{}'", request.getAfter());
+        UUID after;
+        try {
+            after = parseCursor(request.getAfter());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid cursor: " + request.getAfter()).asRuntimeException());
+            return;
+        }
+
+        ServerCallStreamObserver<RecipeProto.Recipe> call = (ServerCallStreamObserver<RecipeProto.Recipe>) responseObserver;
+        RecipeStreamer streamer = new RecipeStreamer(call, after, pageSize(request.getLimit(), DEFAULT_STREAM_BATCH_SIZE));
+        call.setOnCancelHandler(() -> log.info("Recipe stream cancelled by client"));
+        call.setOnReadyHandler(streamer);
+    }
+
+    /**
+     * Bulk import: each batch is bulk-loaded and committed on its own as it arrives. The next batch
+     * is only requested once the current one is written and its recipes announced, so a fast client
+     * cannot outrun the database. Like any other write, imported recipes reach the caches and the
+     * in-memory views through their committed events.
+     */
+    @Override
+    public StreamObserver<RecipeProto.RecipeBatch> importRecipes(StreamObserver<RecipeProto.ImportSummary> responseObserver) {
+        log.info("Received IMPORT request");
+        return new StreamObserver<>() {
+            private long received;
+            private long inserted;
+            private boolean failed;
+
+            @Override
+            public void onNext(RecipeProto.RecipeBatch batch) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    List<Recipe> recipes = batch.getRecipesList().stream()
+                            .map(recipe -> new Recipe(
+                                    recipe.getId().isBlank() ? UUID.randomUUID() : UUID.fromString(recipe.getId()),
+                                    recipe.getName(), recipe.getIngredients(), recipe.getCookingTime()))
+                            .collect(Collectors.toList());
+                    received += recipes.size();
+                    if (!recipes.isEmpty()) {
+                        List<Recipe> written = recipeRepository.copyInsertAll(recipes);
+                        inserted += written.size();
+                        eventPublisher.publish(written.stream()
+                                .map(recipe -> RecipeEventPublisher.upsertedEvent(recipe, recipe.getVersion(), null))
+                                .toList());
+                    }
+                } catch (IllegalArgumentException e) {
+                    failed = true;
+                    responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+                } catch (Exception e) {
+                    failed = true;
+                    log.error("Error while importing recipes after {} received", received, e);
+                    responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Recipe import aborted by client after {} recipes ({} inserted)", received, inserted, t);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                log.info("Recipe import finished: {} received, {} inserted", received, inserted);
+                responseObserver.onNext(RecipeProto.ImportSummary.newBuilder()
+                        .setReceived(received)
+                        .setInserted(inserted)
+                        .build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
     @Override
     @Timed(value = "grpc.create_recipe", description = "Time taken to create a recipe")
     public void createRecipe(RecipeProto.Recipe request, StreamObserver<RecipeProto.Empty> responseObserver) {
         try {
             log.info("Received CREATE request for Recipe: {}", request);
             Recipe recipe = new Recipe(UUID.randomUUID(), request.getName(), request.getIngredients(), request.getCookingTime());
-            byte[] message = objectMapper.writeValueAsBytes(recipe);
-            rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.recipePostRequestQueueRoutingKey, message);
+            commandPublisher.create(recipe);
 
             responseObserver.onNext(RecipeProto.Empty.newBuilder().build());
             responseObserver.onCompleted();
@@ -94,8 +271,7 @@ public class RecipeGrpcService extends RecipeServiceGrpc.RecipeServiceImplBase {
         try {
             log.info("Received UPDATE request for Recipe: {}", request);
             Recipe recipe = new Recipe(UUID.fromString(request.getId()), request.getName(), request.getIngredients(), request.getCookingTime());
-            byte[] message = objectMapper.writeValueAsBytes(recipe);
-            rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.recipePutRequestQueueRoutingKey, message);
+            commandPublisher.update(recipe);
 
             responseObserver.onNext(RecipeProto.Empty.newBuilder().build());
             responseObserver.onCompleted();
@@ -110,8 +286,7 @@ public class RecipeGrpcService extends RecipeServiceGrpc.RecipeServiceImplBase {
     public void deleteRecipe(RecipeProto.RecipeRequest request, StreamObserver<RecipeProto.Empty> responseObserver) {
         try {
             log.info("Received DELETE request for ID: {}", request.getId());
-            byte[] message = request.getId().getBytes();
-            rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.recipeDeleteRequestQueueRoutingKey, message);
+            commandPublisher.delete(UUID.fromString(request.getId()));
 
             responseObserver.onNext(RecipeProto.Empty.newBuilder().build());
             responseObserver.onCompleted();
@@ -120,4 +295,101 @@ public class RecipeGrpcService extends RecipeServiceGrpc.RecipeServiceImplBase {
             responseObserver.onError(e);
         }
     }
+
+    private RecipeProto.Recipe toGrpcRecipe(Recipe recipe) {
+        return RecipeProto.Recipe.newBuilder()
+                .setId(recipe.getId().toString())
+                .setName(recipe.getName())
+                .setIngredients(recipe.getIngredients())
+                .setCookingTime(recipe.getCookingTime())
+                .setVersion(Objects.requireNonNullElse(recipe.getVersion(), 0L))
+                .build();
+    }
+
+    /**
+     * Builds a page from {@code limit + 1} fetched rows; the extra row only signals that another page follows.
+     */
+    private RecipeProto.RecipePageResponse toPageResponse(List<Recipe> recipes, int limit) {
+        boolean hasMore = recipes.size() > limit;
+        if (hasMore) {
+            recipes = recipes.subList(0, limit);
+        }
+        RecipeProto.RecipePageResponse.Builder response = RecipeProto.RecipePageResponse.newBuilder();
+        recipes.forEach(recipe -> response.addRecipes(toGrpcRecipe(recipe)));
+        if (hasMore) {
+            response.setNextCursor(recipes.get(recipes.size() - 1).getId().toString());
+        }
+        return response.build();
+    }
+
+    private List<Recipe> findPage(UUID after, int limit) {
+        return after == null
+                ? recipeRepository.findAllByOrderByIdAsc(Limit.of(limit))
+                : recipeRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    private static UUID parseCursor(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : UUID.fromString(cursor);
+    }
+
+    private static int pageSize(int requested, int defaultSize) {
+        if (requested <= 0) {
+            return defaultSize;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Pushes recipes to the client one keyset page at a time, only while the transport is ready,
+     * so at most one page is held in memory regardless of table size or client speed.
+     */
+    private final class RecipeStreamer implements Runnable {
+
+        private final ServerCallStreamObserver<RecipeProto.Recipe> call;
+        private final int batchSize;
+        private UUID cursor;
+        private Iterator<Recipe> batch = Collections.emptyIterator();
+        private boolean lastBatch;
+        private boolean done;
+
+        private RecipeStreamer(ServerCallStreamObserver<RecipeProto.Recipe> call, UUID after, int batchSize) {
+            this.call = call;
+            this.cursor = after;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void run() {
+            if (done) {
+                return;
+            }
+            try {
+                while (call.isReady()) {
+                    if (call.isCancelled()) {
+                        done = true;
+                        return;
+                    }
+                    if (batch.hasNext()) {
+                        call.onNext(toGrpcRecipe(batch.next()));
+                        continue;
+                    }
+                    if (lastBatch) {
+                        done = true;
+                        call.onCompleted();
+                        return;
+                    }
+                    List<Recipe> recipes = findPage(cursor, batchSize);
+                    lastBatch = recipes.size() < batchSize;
+                    if (!recipes.isEmpty()) {
+                        cursor = recipes.get(recipes.size() - 1).getId();
+                    }
+                    batch = recipes.iterator();
+                }
+            } catch (Exception e) {
+                done = true;
+                log.error("Error while streaming recipes", e);
+                call.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            }
+        }
+    }
 }
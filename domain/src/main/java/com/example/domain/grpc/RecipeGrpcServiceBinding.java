@@ -0,0 +1,108 @@
+package com.example.domain.grpc;
+
+import com.example.domain.service.RecipeReadModel;
+import com.google.protobuf.MessageLite;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Registers {@link RecipeGrpcService} with the gRPC server. With the read model enabled, GetRecipe and
+ * ListRecipes are bound with a pass-through response marshaller, so the model's pre-encoded responses are
+ * written out as they are; until the model is loaded, and for recipes it does not hold, they are answered
+ * by {@link RecipeGrpcService} from the database as before.
+ */
+@Slf4j
+@GrpcService
+public class RecipeGrpcServiceBinding implements BindableService {
+
+    private final RecipeGrpcService recipeGrpcService;
+    private final RecipeReadModel readModel;
+
+    public RecipeGrpcServiceBinding(RecipeGrpcService recipeGrpcService, RecipeReadModel readModel) {
+        this.recipeGrpcService = recipeGrpcService;
+        this.readModel = readModel;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        ServerServiceDefinition generated = recipeGrpcService.bindService();
+        if (!readModel.isEnabled()) {
+            return generated;
+        }
+        ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(generated.getServiceDescriptor().getName())
+                .setSchemaDescriptor(generated.getServiceDescriptor().getSchemaDescriptor());
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> method : generated.getMethods()) {
+            String name = method.getMethodDescriptor().getFullMethodName();
+            if (name.equals(RecipeServiceGrpc.getGetRecipeMethod().getFullMethodName())) {
+                method = encoded(RecipeServiceGrpc.getGetRecipeMethod(), this::getRecipe);
+            } else if (name.equals(RecipeServiceGrpc.getListRecipesMethod().getFullMethodName())) {
+                method = encoded(RecipeServiceGrpc.getListRecipesMethod(), this::listRecipes);
+            }
+            methods.add(method);
+            descriptor.addMethod(method.getMethodDescriptor());
+        }
+        ServerServiceDefinition.Builder service = ServerServiceDefinition.builder(descriptor.build());
+        methods.forEach(service::addMethod);
+        return service.build();
+    }
+
+    private void getRecipe(RecipeProto.RecipeRequest request, StreamObserver<byte[]> responseObserver) {
+        byte[] response = readModel.getRecipeResponse(UUID.fromString(request.getId()));
+        if (response == null) {
+            recipeGrpcService.getRecipe(request, encoding(responseObserver));
+            return;
+        }
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private void listRecipes(RecipeProto.Empty request, StreamObserver<byte[]> responseObserver) {
+        byte[] response = readModel.getListRecipesResponse();
+        if (response == null) {
+            recipeGrpcService.listRecipes(request, encoding(responseObserver));
+            return;
+        }
+        log.info("Received LIST request for all recipes, answered from the read model");
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private static <ReqT> ServerMethodDefinition<ReqT, byte[]> encoded(MethodDescriptor<ReqT, ?> method,
+                                                                       ServerCalls.UnaryMethod<ReqT, byte[]> handler) {
+        return ServerMethodDefinition.create(
+                method.toBuilder(method.getRequestMarshaller(), EncodedMessageMarshaller.INSTANCE).build(),
+                ServerCalls.asyncUnaryCall(handler));
+    }
+
+    // Lets the regular handlers answer a call bound with the pass-through marshaller
+    private static <T extends MessageLite> StreamObserver<T> encoding(StreamObserver<byte[]> responseObserver) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                responseObserver.onNext(value.toByteArray());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                responseObserver.onError(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onCompleted();
+            }
+        };
+    }
+}
@@ -28,4 +28,12 @@ public class Recipe {
 
     @Column(name = "cookingTime")
     private int cookingTime;
+
+    // Assigned by the database from recipe_version_seq on every write; null until read back
+    @Column(name = "version", insertable = false, updatable = false)
+    private Long version;
+
+    public Recipe(UUID id, String name, String ingredients, int cookingTime) {
+        this(id, name, ingredients, cookingTime, null);
+    }
 }
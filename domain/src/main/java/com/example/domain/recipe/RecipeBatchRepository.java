@@ -0,0 +1,41 @@
+package com.example.domain.recipe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Set-based writes: each call is one statement over arrays of values, reporting the rows it actually
+ * changed together with the version they were written with.
+ */
+public interface RecipeBatchRepository {
+
+    /**
+     * Inserts all given recipes, leaving recipes that already exist untouched.
+     *
+     * @return the recipes inserted
+     */
+    List<RecipeVersion> insertAll(List<Recipe> recipes);
+
+    /**
+     * Updates all given recipes; ids must be distinct.
+     *
+     * @return the recipes updated (recipes that do not exist are missing)
+     */
+    List<RecipeVersion> updateAll(List<Recipe> recipes);
+
+    /**
+     * Deletes the recipes with the given ids.
+     *
+     * @return the recipes deleted, each with the version of its deletion
+     */
+    List<RecipeVersion> deleteAllByIds(Collection<UUID> ids);
+
+    /**
+     * Bulk-loads recipes with {@code COPY} into a staging table and inserts those not already present.
+     * Of recipes sharing an id within one call, only one is inserted.
+     *
+     * @return the recipes inserted, as written and with their version
+     */
+    List<Recipe> copyInsertAll(List<Recipe> recipes);
+}
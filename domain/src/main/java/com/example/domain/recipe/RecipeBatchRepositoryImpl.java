@@ -0,0 +1,132 @@
+package com.example.domain.recipe;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public class RecipeBatchRepositoryImpl implements RecipeBatchRepository {
+
+    // One statement per call: the values arrive as parallel arrays and are expanded with unnest
+    private static final String INSERT_SQL =
+            "INSERT INTO recipes (id, name, ingredients, cooking_time) " +
+                    "SELECT * FROM unnest(?::uuid[], ?::varchar[], ?::varchar[], ?::integer[]) " +
+                    "ON CONFLICT (id) DO NOTHING RETURNING id, version";
+
+    private static final String UPDATE_SQL =
+            "UPDATE recipes r SET name = u.name, ingredients = u.ingredients, cooking_time = u.cooking_time, " +
+                    "version = nextval('recipe_version_seq') " +
+                    "FROM unnest(?::uuid[], ?::varchar[], ?::varchar[], ?::integer[]) AS u (id, name, ingredients, cooking_time) " +
+                    "WHERE r.id = u.id RETURNING r.id, r.version";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM recipes WHERE id = ANY (?::uuid[]) RETURNING id, nextval('recipe_version_seq')";
+
+    private static final RowMapper<RecipeVersion> RECIPE_VERSION_MAPPER =
+            (rs, rowNum) -> new RecipeVersion(rs.getObject(1, UUID.class), rs.getLong(2));
+
+    // Session-local staging table, emptied at every commit, so pooled connections can reuse it
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TEMP TABLE IF NOT EXISTS recipes_import (id uuid, name text, ingredients text, cooking_time integer) " +
+                    "ON COMMIT DELETE ROWS";
+
+    private static final String COPY_STAGING_SQL =
+            "COPY recipes_import (id, name, ingredients, cooking_time) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String INSERT_FROM_STAGING_SQL =
+            "INSERT INTO recipes (id, name, ingredients, cooking_time) " +
+                    "SELECT DISTINCT ON (id) id, name, ingredients, cooking_time FROM recipes_import " +
+                    "ON CONFLICT (id) DO NOTHING RETURNING id, name, ingredients, cooking_time, version";
+
+    private static final RowMapper<Recipe> RECIPE_MAPPER = (rs, rowNum) -> new Recipe(
+            rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getLong(5));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RecipeBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<RecipeVersion> insertAll(List<Recipe> recipes) {
+        return jdbcTemplate.query(connection -> recipeArrays(connection, INSERT_SQL, recipes), RECIPE_VERSION_MAPPER);
+    }
+
+    @Override
+    @Transactional
+    public List<RecipeVersion> updateAll(List<Recipe> recipes) {
+        return jdbcTemplate.query(connection -> recipeArrays(connection, UPDATE_SQL, recipes), RECIPE_VERSION_MAPPER);
+    }
+
+    @Override
+    @Transactional
+    public List<RecipeVersion> deleteAllByIds(Collection<UUID> ids) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(DELETE_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+            return ps;
+        }, RECIPE_VERSION_MAPPER);
+    }
+
+    @Override
+    @Transactional
+    public List<Recipe> copyInsertAll(List<Recipe> recipes) {
+        StringBuilder csv = new StringBuilder(recipes.size() * 128);
+        for (Recipe recipe : recipes) {
+            csv.append(recipe.getId()).append(',');
+            appendCsvField(csv, recipe.getName());
+            csv.append(',');
+            appendCsvField(csv, recipe.getIngredients());
+            csv.append(',').append(recipe.getCookingTime()).append('\n');
+        }
+        jdbcTemplate.execute(CREATE_STAGING_SQL);
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_SQL, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return jdbcTemplate.query(INSERT_FROM_STAGING_SQL, RECIPE_MAPPER);
+    }
+
+    private static PreparedStatement recipeArrays(Connection connection, String sql, List<Recipe> recipes) throws SQLException {
+        Object[] ids = new Object[recipes.size()];
+        Object[] names = new Object[recipes.size()];
+        Object[] ingredients = new Object[recipes.size()];
+        Object[] cookingTimes = new Object[recipes.size()];
+        for (int i = 0; i < recipes.size(); i++) {
+            Recipe recipe = recipes.get(i);
+            ids[i] = recipe.getId();
+            names[i] = recipe.getName();
+            ingredients[i] = recipe.getIngredients();
+            cookingTimes[i] = recipe.getCookingTime();
+        }
+        PreparedStatement ps = connection.prepareStatement(sql);
+        ps.setArray(1, connection.createArrayOf("uuid", ids));
+        ps.setArray(2, connection.createArrayOf("varchar", names));
+        ps.setArray(3, connection.createArrayOf("varchar", ingredients));
+        ps.setArray(4, connection.createArrayOf("integer", cookingTimes));
+        return ps;
+    }
+
+    // Unquoted empty fields are NULL in COPY's csv format, so every text value is quoted
+    private static void appendCsvField(StringBuilder csv, String value) {
+        if (value == null) {
+            return;
+        }
+        csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
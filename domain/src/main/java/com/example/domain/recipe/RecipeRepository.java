@@ -1,10 +1,17 @@
 package com.example.domain.recipe;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface RecipeRepository extends JpaRepository<Recipe, UUID> {
+public interface RecipeRepository extends JpaRepository<Recipe, UUID>, RecipeBatchRepository, RecipeSearchRepository {
+
+    // Keyset pagination by id: first page and every page after a given cursor
+    List<Recipe> findAllByOrderByIdAsc(Limit limit);
+
+    List<Recipe> findByIdGreaterThanOrderByIdAsc(UUID after, Limit limit);
 }
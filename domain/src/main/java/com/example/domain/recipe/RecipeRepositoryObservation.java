@@ -0,0 +1,41 @@
+package com.example.domain.recipe;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every {@link RecipeRepository} call in a {@code recipe.repository} observation: a span under the
+ * gRPC call or AMQP delivery being handled, and a timer tagged with the repository method. Spring Data
+ * repositories are proxies built at runtime, so they cannot carry {@code @Observed} themselves.
+ */
+@Aspect
+@Component
+public class RecipeRepositoryObservation {
+
+    private final ObservationRegistry observationRegistry;
+
+    public RecipeRepositoryObservation(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Around("execution(public * *(..)) && target(com.example.domain.recipe.RecipeRepository)")
+    public Object observe(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Observation observation = Observation.createNotStarted("recipe.repository", observationRegistry)
+                .contextualName("recipe-repository " + method)
+                .lowCardinalityKeyValue("method", method)
+                .start();
+        try (Observation.Scope ignored = observation.openScope()) {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+}
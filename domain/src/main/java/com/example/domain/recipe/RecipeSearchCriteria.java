@@ -0,0 +1,19 @@
+package com.example.domain.recipe;
+
+import java.util.List;
+
+/**
+ * Recipe search filters; {@code null} or empty values are not applied.
+ *
+ * @param namePrefix     case-insensitive prefix of the recipe name
+ * @param text           full-text query over name and ingredients
+ * @param ingredients    ingredients that must all be present (case-insensitive)
+ * @param minCookingTime inclusive lower bound of the cooking time
+ * @param maxCookingTime inclusive upper bound of the cooking time
+ */
+public record RecipeSearchCriteria(String namePrefix,
+                                   String text,
+                                   List<String> ingredients,
+                                   Integer minCookingTime,
+                                   Integer maxCookingTime) {
+}
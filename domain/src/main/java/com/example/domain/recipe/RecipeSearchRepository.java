@@ -0,0 +1,15 @@
+package com.example.domain.recipe;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface RecipeSearchRepository {
+
+    /**
+     * Finds recipes matching all given criteria, ordered by id and keyset-paginated like
+     * {@link RecipeRepository#findByIdGreaterThanOrderByIdAsc}.
+     *
+     * @param after id of the last recipe of the previous page, or {@code null} for the first page
+     */
+    List<Recipe> search(RecipeSearchCriteria criteria, UUID after, int limit);
+}
@@ -0,0 +1,78 @@
+package com.example.domain.recipe;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Each filter is written exactly like the expression of its index in {@code V2__recipe_search_indexes.sql},
+ * otherwise Postgres cannot use the index.
+ */
+public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
+
+    private static final RowMapper<Recipe> RECIPE_ROW_MAPPER = (rs, rowNum) -> new Recipe(
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getString("ingredients"),
+            rs.getInt("cooking_time"),
+            rs.getLong("version"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public RecipeSearchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public List<Recipe> search(RecipeSearchCriteria criteria, UUID after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, name, ingredients, cooking_time, version FROM recipes WHERE TRUE");
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        if (hasText(criteria.namePrefix())) {
+            sql.append(" AND lower(name) LIKE :namePrefix");
+            params.addValue("namePrefix", escapeLike(criteria.namePrefix().toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (hasText(criteria.text())) {
+            sql.append(" AND to_tsvector('simple', coalesce(name, '') || ' ' || coalesce(ingredients, ''))" +
+                    " @@ plainto_tsquery('simple', :text)");
+            params.addValue("text", criteria.text());
+        }
+        List<String> ingredients = criteria.ingredients() == null ? List.of() : criteria.ingredients().stream()
+                .filter(RecipeSearchRepositoryImpl::hasText)
+                .map(ingredient -> ingredient.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        if (!ingredients.isEmpty()) {
+            sql.append(" AND recipe_ingredients(ingredients) @> ARRAY[:ingredients]::text[]");
+            params.addValue("ingredients", ingredients);
+        }
+        if (criteria.minCookingTime() != null) {
+            sql.append(" AND cooking_time >= :minCookingTime");
+            params.addValue("minCookingTime", criteria.minCookingTime());
+        }
+        if (criteria.maxCookingTime() != null) {
+            sql.append(" AND cooking_time <= :maxCookingTime");
+            params.addValue("maxCookingTime", criteria.maxCookingTime());
+        }
+        if (after != null) {
+            sql.append(" AND id > :after");
+            params.addValue("after", after);
+        }
+        sql.append(" ORDER BY id LIMIT :limit");
+        params.addValue("limit", limit);
+
+        return jdbcTemplate.query(sql.toString(), params, RECIPE_ROW_MAPPER);
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
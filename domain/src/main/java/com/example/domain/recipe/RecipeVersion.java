@@ -0,0 +1,9 @@
+package com.example.domain.recipe;
+
+import java.util.UUID;
+
+/**
+ * Version a recipe write committed with; for a delete, the version of the deletion.
+ */
+public record RecipeVersion(UUID id, long version) {
+}
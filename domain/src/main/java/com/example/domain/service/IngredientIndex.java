@@ -0,0 +1,302 @@
+package com.example.domain.service;
+
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index from ingredient to the recipes using it, for "contains all of / any of /
+ * none of" queries without touching the database.
+ * <p>
+ * Each recipe gets a dense ordinal and each ingredient a {@link RoaringBitmap} of ordinals, so a query
+ * is a handful of bitmap ANDs/ORs. The index is loaded from the normalized {@code recipe_ingredient}
+ * table at startup and periodically (which compacts ordinals of deleted recipes), and patched in between
+ * from the committed-write events of all domain instances ({@link RecipeEventSubscriber}). The index
+ * remembers each recipe's write version, deletes included, so an event older than what it holds is ignored.
+ * A rebuild carries over deletes younger than {@code delete-grace}, so a late upsert from before a delete
+ * cannot bring the recipe back just because the delete's version was dropped with the old index.
+ */
+@Slf4j
+@Component
+public class IngredientIndex {
+
+    private static final String LOAD_SQL =
+            "SELECT r.id, r.version, i.name FROM recipes r " +
+                    "LEFT JOIN recipe_ingredient ri ON ri.recipe_id = r.id " +
+                    "LEFT JOIN ingredients i ON i.id = ri.ingredient_id";
+
+    private static final String[] NO_INGREDIENTS = new String[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration deleteGrace;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    // Changes applied while a rebuild is loading, replayed onto the new index before it is swapped in
+    private List<Change> changesDuringRebuild;
+
+    public IngredientIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${recipe.ingredient-index.delete-grace:PT15M}") Duration deleteGrace) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deleteGrace = deleteGrace;
+    }
+
+    public record Result(List<UUID> recipeIds, long total) {
+    }
+
+    /**
+     * Recipes containing every ingredient of {@code all}, at least one of {@code any} (if given) and none
+     * of {@code none}. Returns the total match count and the ids of at most {@code limit} of them.
+     */
+    @Observed(name = "recipe.ingredient_index", contextualName = "ingredient-index query",
+            lowCardinalityKeyValues = {"operation", "query"})
+    public Result query(Collection<String> all, Collection<String> any, Collection<String> none, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = index.query(normalize(all), normalize(any), normalize(none));
+            List<UUID> ids = new ArrayList<>(Math.min(limit, matches.getCardinality()));
+            IntIterator ordinals = matches.getIntIterator();
+            while (ordinals.hasNext() && ids.size() < limit) {
+                ids.add(index.ids.get(ordinals.next()));
+            }
+            return new Result(ids, matches.getLongCardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(UUID recipeId, String ingredients, long version) {
+        apply(new Change(recipeId, version, parse(ingredients), System.nanoTime()));
+    }
+
+    /**
+     * Drops a deleted recipe; {@code version} is the version of the delete.
+     */
+    public void remove(UUID recipeId, long version) {
+        apply(new Change(recipeId, version, null, System.nanoTime()));
+    }
+
+    /**
+     * Rebuilds the index, logging instead of throwing so a database outage only leaves it stale.
+     */
+    @Observed(name = "recipe.ingredient_index", contextualName = "ingredient-index rebuild",
+            lowCardinalityKeyValues = {"operation", "rebuild"})
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${recipe.ingredient-index.rebuild-interval:PT5M}",
+            initialDelayString = "${recipe.ingredient-index.rebuild-interval:PT5M}")
+    public void refresh() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to rebuild ingredient index", e);
+        }
+    }
+
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        Index fresh = new Index();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+            // Before the load, so rows it read from before these deletes are ignored
+            index.recentDeletes(start - deleteGrace.toNanos()).forEach(fresh::apply);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean loaded = false;
+        try {
+            Map<UUID, Long> versions = new HashMap<>();
+            Map<UUID, List<String>> current = new HashMap<>();
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                UUID id = rs.getObject(1, UUID.class);
+                versions.put(id, rs.getLong(2));
+                List<String> ingredients = current.computeIfAbsent(id, key -> new ArrayList<>(4));
+                String ingredient = rs.getString(3);
+                if (ingredient != null) {
+                    ingredients.add(ingredient);
+                }
+            });
+            current.forEach((id, ingredients) ->
+                    fresh.apply(new Change(id, versions.get(id), ingredients.toArray(NO_INGREDIENTS), start)));
+            loaded = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    changesDuringRebuild.forEach(fresh::apply);
+                    index = fresh;
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Ingredient index rebuilt: {} recipes, {} ingredients in {} ms",
+                index.live.getCardinality(), index.postings.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            index.apply(change);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Same normalization as the {@code recipe_ingredients} SQL function: split on commas, trim, lower-case.
+     */
+    static String[] parse(String ingredients) {
+        if (ingredients == null) {
+            return NO_INGREDIENTS;
+        }
+        return normalize(Arrays.asList(ingredients.split(","))).toArray(NO_INGREDIENTS);
+    }
+
+    private static Set<String> normalize(Collection<String> ingredients) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String ingredient : ingredients) {
+            String name = ingredient.trim().toLowerCase(Locale.ROOT);
+            if (!name.isEmpty()) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Full ingredient set of a recipe after a write, or {@code null} when the recipe was deleted, and when
+     * ({@link System#nanoTime()}) it reached the index. Applying a change is idempotent, so replaying one the
+     * index already reflects is harmless.
+     */
+    private record Change(UUID recipeId, long version, String[] ingredients, long appliedAt) {
+    }
+
+    private static final class Index {
+
+        private final Map<UUID, Integer> ordinals = new HashMap<>();
+        private final List<UUID> ids = new ArrayList<>();
+        private final List<String[]> ingredientsByOrdinal = new ArrayList<>();
+        private final Map<String, RoaringBitmap> postings = new HashMap<>();
+        private final RoaringBitmap live = new RoaringBitmap();
+        // Last write version per recipe, deleted ones included
+        private final Map<UUID, Long> versions = new HashMap<>();
+        // Deleted recipes, by when the delete was applied
+        private final Map<UUID, Long> deletedAt = new HashMap<>();
+
+        private void apply(Change change) {
+            Long known = versions.get(change.recipeId());
+            if (known != null && known > change.version()) {
+                return;
+            }
+            versions.put(change.recipeId(), change.version());
+            if (change.ingredients() == null) {
+                deletedAt.put(change.recipeId(), change.appliedAt());
+            } else {
+                deletedAt.remove(change.recipeId());
+            }
+            Integer ordinal = ordinals.get(change.recipeId());
+            if (ordinal != null) {
+                for (String ingredient : ingredientsByOrdinal.get(ordinal)) {
+                    RoaringBitmap recipes = postings.get(ingredient);
+                    recipes.remove(ordinal);
+                    if (recipes.isEmpty()) {
+                        postings.remove(ingredient);
+                    }
+                }
+            }
+            if (change.ingredients() == null) {
+                if (ordinal != null) {
+                    // The ordinal stays unused until the next rebuild renumbers recipes
+                    live.remove(ordinal);
+                    ingredientsByOrdinal.set(ordinal, NO_INGREDIENTS);
+                    ordinals.remove(change.recipeId());
+                }
+                return;
+            }
+            if (ordinal == null) {
+                ordinal = ids.size();
+                ids.add(change.recipeId());
+                ingredientsByOrdinal.add(NO_INGREDIENTS);
+                ordinals.put(change.recipeId(), ordinal);
+            }
+            live.add(ordinal);
+            ingredientsByOrdinal.set(ordinal, change.ingredients());
+            for (String ingredient : change.ingredients()) {
+                postings.computeIfAbsent(ingredient, name -> new RoaringBitmap()).add(ordinal);
+            }
+        }
+
+        private List<Change> recentDeletes(long since) {
+            List<Change> deletes = new ArrayList<>();
+            deletedAt.forEach((id, at) -> {
+                if (at - since >= 0) {
+                    deletes.add(new Change(id, versions.get(id), null, at));
+                }
+            });
+            return deletes;
+        }
+
+        private RoaringBitmap query(Set<String> all, Set<String> any, Set<String> none) {
+            RoaringBitmap matches;
+            if (all.isEmpty()) {
+                matches = live.clone();
+            } else {
+                List<RoaringBitmap> required = new ArrayList<>(all.size());
+                for (String ingredient : all) {
+                    RoaringBitmap recipes = postings.get(ingredient);
+                    if (recipes == null) {
+                        return new RoaringBitmap();
+                    }
+                    required.add(recipes);
+                }
+                matches = FastAggregation.and(required.iterator());
+            }
+            if (!any.isEmpty()) {
+                matches.and(union(any));
+            }
+            if (!none.isEmpty()) {
+                matches.andNot(union(none));
+            }
+            return matches;
+        }
+
+        private RoaringBitmap union(Set<String> ingredients) {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(ingredients.size());
+            for (String ingredient : ingredients) {
+                RoaringBitmap recipes = postings.get(ingredient);
+                if (recipes != null) {
+                    bitmaps.add(recipes);
+                }
+            }
+            return FastAggregation.or(bitmaps.iterator());
+        }
+    }
+}
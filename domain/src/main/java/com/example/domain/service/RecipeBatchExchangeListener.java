@@ -0,0 +1,290 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeRepository;
+import com.example.domain.recipe.RecipeVersion;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.*;
+
+/**
+ * Batching counterpart of {@link RecipeExchangeListener}, enabled with {@code recipe.consumer.batch.enabled=true}.
+ * A batch from a command partition is split into runs of consecutive commands with the same op,
+ * applied in order, so per-recipe ordering holds across mixed creates, updates and deletes.
+ * Each run is written with one set-based statement, and every row it changed is announced with a committed event.
+ * In this mode one {@code recipe.commands.apply} sample times a whole run.
+ * <p>
+ * A message that cannot be decoded is republished to the dead-letter exchange on its own, and the rest of the
+ * batch goes on. A run that fails to apply fails the batch: the container retries it and then rejects the whole
+ * batch to the dead-letter queue (see {@code RabbitMQConfig}). Runs that had already committed are idempotent to
+ * replay, except that an update replayed later may overwrite a newer one.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "recipe.consumer.batch.enabled", havingValue = "true")
+public class RecipeBatchExchangeListener implements RabbitListenerConfigurer {
+
+    private final RecipeRepository recipeRepository;
+    private final RecipeCommandCodec commandCodec;
+    private final RecipeEventPublisher eventPublisher;
+    private final RecipeCommandMetrics commandMetrics;
+    private final RabbitListenerContainerFactory<?> batchContainerFactory;
+    private final MessageRecoverer deadLetterPublisher;
+    private final int partitions;
+
+    public RecipeBatchExchangeListener(RecipeRepository recipeRepository,
+                                       RecipeCommandCodec commandCodec,
+                                       RecipeEventPublisher eventPublisher,
+                                       RecipeCommandMetrics commandMetrics,
+                                       RabbitTemplate rabbitTemplate,
+                                       @Qualifier(batchListenerContainerFactoryName) RabbitListenerContainerFactory<?> batchContainerFactory,
+                                       @Value("${recipe.commands.partitions:4}") int partitions) {
+        this.recipeRepository = recipeRepository;
+        this.commandCodec = commandCodec;
+        this.eventPublisher = eventPublisher;
+        this.commandMetrics = commandMetrics;
+        this.batchContainerFactory = batchContainerFactory;
+        this.deadLetterPublisher = new RepublishMessageRecoverer(rabbitTemplate, recipeDeadLetterExchangeName);
+        this.partitions = partitions;
+    }
+
+    @Override
+    public void configureRabbitListeners(@NonNull RabbitListenerEndpointRegistrar registrar) {
+        for (int partition = 0; partition < partitions; partition++) {
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId("recipeCommandPartition-" + partition);
+            endpoint.setQueueNames(recipeCommandQueueName(partition));
+            endpoint.setConcurrency("1");
+            endpoint.setMessageListener((BatchMessageListener) this::onCommandBatch);
+            registrar.registerEndpoint(endpoint, batchContainerFactory);
+        }
+    }
+
+    public void onCommandBatch(List<Message> messages) {
+        log.info("Received command batch of {} messages", messages.size());
+        List<RecipeCommandCodec.Command> run = new ArrayList<>();
+        RecipeProto.RecipeCommand.Op runOp = null;
+        for (Message message : messages) {
+            RecipeCommandCodec.Command command = decodeOrDeadLetter(message, "recipe command");
+            if (command == null) {
+                continue;
+            }
+            if (command.op() != runOp) {
+                applyRun(runOp, run);
+                run.clear();
+                runOp = command.op();
+            }
+            run.add(command);
+        }
+        applyRun(runOp, run);
+    }
+
+    @RabbitListener(queues = recipePostRequestQueueName, containerFactory = batchListenerContainerFactoryName)
+    public void onPostBatch(List<Message> messages) {
+        log.info("Received POST batch of {} messages", messages.size());
+        insertAll(firstPerRecipe(readCommands(messages, "POST"), "POST"));
+    }
+
+    @RabbitListener(queues = recipePutRequestQueueName, containerFactory = batchListenerContainerFactoryName)
+    public void onPutBatch(List<Message> messages) {
+        log.info("Received PUT batch of {} messages", messages.size());
+        updateAll(lastPerRecipe(readCommands(messages, "PUT"), "PUT"));
+    }
+
+    @RabbitListener(queues = recipeDeleteRequestQueueName, containerFactory = batchListenerContainerFactoryName)
+    public void onDeleteBatch(List<Message> messages) {
+        log.info("Received DELETE batch of {} messages", messages.size());
+        deleteAll(readCommands(messages, "DELETE"));
+    }
+
+    private void applyRun(RecipeProto.RecipeCommand.Op op, List<RecipeCommandCodec.Command> run) {
+        if (run.isEmpty()) {
+            return;
+        }
+        switch (op) {
+            case CREATE -> insertAll(firstPerRecipe(run, "CREATE"));
+            case UPDATE -> updateAll(lastPerRecipe(run, "UPDATE"));
+            case DELETE -> deleteAll(run);
+            default -> log.warn("Skipping {} commands with unknown op {}", run.size(), op);
+        }
+    }
+
+    private void insertAll(List<RecipeCommandCodec.Command> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = commandMetrics.startApply();
+        try {
+            List<RecipeVersion> inserted = recipeRepository.insertAll(recipes(commands));
+            announceUpserts(RecipeProto.RecipeCommand.Op.CREATE, commands, inserted);
+            commandMetrics.applied(RecipeProto.RecipeCommand.Op.CREATE, outcome(inserted), sample);
+            log.info("Recipes successfully created: {} of {}", inserted.size(), commands.size());
+        } catch (RuntimeException e) {
+            log.error("Error processing POST batch of {} recipes", commands.size(), e);
+            commandMetrics.applied(RecipeProto.RecipeCommand.Op.CREATE, RecipeCommandMetrics.FAILED, sample);
+            throw e;
+        }
+    }
+
+    private void updateAll(List<RecipeCommandCodec.Command> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = commandMetrics.startApply();
+        try {
+            List<RecipeVersion> updated = recipeRepository.updateAll(recipes(commands));
+            if (updated.size() < commands.size()) {
+                log.warn("{} of {} recipes not found for update", commands.size() - updated.size(), commands.size());
+            }
+            announceUpserts(RecipeProto.RecipeCommand.Op.UPDATE, commands, updated);
+            commandMetrics.applied(RecipeProto.RecipeCommand.Op.UPDATE, outcome(updated), sample);
+            log.info("Recipes successfully updated: {}", updated.size());
+        } catch (RuntimeException e) {
+            log.error("Error processing PUT batch of {} recipes", commands.size(), e);
+            commandMetrics.applied(RecipeProto.RecipeCommand.Op.UPDATE, RecipeCommandMetrics.FAILED, sample);
+            throw e;
+        }
+    }
+
+    private void deleteAll(List<RecipeCommandCodec.Command> commands) {
+        // Last command per id, for the command id its event reports
+        Map<UUID, RecipeCommandCodec.Command> byId = new LinkedHashMap<>();
+        for (RecipeCommandCodec.Command command : commands) {
+            if (command.id() == null) {
+                log.warn("Skipping DELETE message without recipe ID");
+                continue;
+            }
+            byId.put(command.id(), command);
+        }
+        if (byId.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = commandMetrics.startApply();
+        try {
+            List<RecipeVersion> deleted = recipeRepository.deleteAllByIds(byId.keySet());
+            List<RecipeProto.RecipeEvent> events = new ArrayList<>(deleted.size());
+            for (RecipeVersion deletion : deleted) {
+                RecipeCommandCodec.Command command = byId.get(deletion.id());
+                events.add(RecipeEventPublisher.deletedEvent(deletion, command.commandId()));
+                commandMetrics.committed(RecipeProto.RecipeCommand.Op.DELETE, command.timestamp());
+            }
+            eventPublisher.publish(events);
+            commandMetrics.applied(RecipeProto.RecipeCommand.Op.DELETE, outcome(deleted), sample);
+            log.info("Recipes successfully deleted: {} of {}", deleted.size(), byId.size());
+        } catch (RuntimeException e) {
+            log.error("Error processing DELETE batch of {} ids", byId.size(), e);
+            commandMetrics.applied(RecipeProto.RecipeCommand.Op.DELETE, RecipeCommandMetrics.FAILED, sample);
+            throw e;
+        }
+    }
+
+    private void announceUpserts(RecipeProto.RecipeCommand.Op op, List<RecipeCommandCodec.Command> commands,
+                                 List<RecipeVersion> written) {
+        Map<UUID, RecipeCommandCodec.Command> byId = new HashMap<>();
+        commands.forEach(command -> byId.put(command.recipe().getId(), command));
+        List<RecipeProto.RecipeEvent> events = new ArrayList<>(written.size());
+        for (RecipeVersion version : written) {
+            RecipeCommandCodec.Command command = byId.get(version.id());
+            events.add(RecipeEventPublisher.upsertedEvent(command.recipe(), version.version(), command.commandId()));
+            commandMetrics.committed(op, command.timestamp());
+        }
+        // One round of confirms for the whole run; a run has one command per recipe
+        eventPublisher.publish(events);
+    }
+
+    // A run counts as applied when it wrote at least one row
+    private static String outcome(List<RecipeVersion> written) {
+        return written.isEmpty() ? RecipeCommandMetrics.SKIPPED : RecipeCommandMetrics.APPLIED;
+    }
+
+    private List<RecipeCommandCodec.Command> readCommands(List<Message> messages, String operation) {
+        List<RecipeCommandCodec.Command> commands = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            RecipeCommandCodec.Command command = decodeOrDeadLetter(message, operation);
+            if (command != null) {
+                commands.add(command);
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Decodes one message of a batch; one that cannot be decoded is dead-lettered by itself and null returned.
+     */
+    private RecipeCommandCodec.Command decodeOrDeadLetter(Message message, String kind) {
+        commandMetrics.received(message);
+        try {
+            return commandCodec.decode(message);
+        } catch (Exception e) {
+            log.error("Error parsing {} message, moving it to {}", kind, recipeDeadLetterQueueName, e);
+            deadLetterPublisher.recover(message, e);
+            return null;
+        }
+    }
+
+    private static List<Recipe> recipes(List<RecipeCommandCodec.Command> commands) {
+        return commands.stream().map(RecipeCommandCodec.Command::recipe).toList();
+    }
+
+    /**
+     * Keeps only the first create per recipe, so a batch never touches the same row twice. Like one-by-one
+     * inserts (ON CONFLICT DO NOTHING), the first create wins and later duplicates are skipped.
+     */
+    private List<RecipeCommandCodec.Command> firstPerRecipe(List<RecipeCommandCodec.Command> commands, String operation) {
+        Map<UUID, RecipeCommandCodec.Command> first = new LinkedHashMap<>();
+        for (RecipeCommandCodec.Command command : commands) {
+            if (hasRecipeId(command, operation)) {
+                first.putIfAbsent(command.recipe().getId(), command);
+            }
+        }
+        return new ArrayList<>(first.values());
+    }
+
+    /**
+     * Keeps only the last update per recipe, so a batch never touches the same row twice; like one-by-one
+     * updates, the last one wins.
+     */
+    private List<RecipeCommandCodec.Command> lastPerRecipe(List<RecipeCommandCodec.Command> commands, String operation) {
+        Map<UUID, RecipeCommandCodec.Command> last = new LinkedHashMap<>();
+        for (RecipeCommandCodec.Command command : commands) {
+            if (hasRecipeId(command, operation)) {
+                last.remove(command.recipe().getId());
+                last.put(command.recipe().getId(), command);
+            }
+        }
+        return new ArrayList<>(last.values());
+    }
+
+    private static boolean hasRecipeId(RecipeCommandCodec.Command command, String operation) {
+        Recipe recipe = command.recipe();
+        if (recipe == null || recipe.getId() == null) {
+            log.warn("Skipping {} message without recipe ID", operation);
+            return false;
+        }
+        return true;
+    }
+}
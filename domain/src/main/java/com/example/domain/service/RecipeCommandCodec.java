@@ -0,0 +1,116 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.recipeCommandContentType;
+import static com.example.domain.config.RabbitMQConfig.recipeCommandVersion;
+
+/**
+ * Encodes and decodes recipe write commands on the AMQP queues.
+ * <p>
+ * Current publishers send a {@link RecipeProto.RecipeCommand} with content type
+ * {@code application/x-protobuf}. Messages from publishers that predate it are still accepted:
+ * a JSON recipe, a raw or JSON-quoted recipe ID, or either of those wrapped as a base64 JSON
+ * string (what the JSON message converter produces for a {@code byte[]} payload).
+ * <p>
+ * Envelopes of another {@code version} than this consumer speaks are rejected rather than guessed at:
+ * they are not requeued but dead-lettered, and can be replayed once every consumer understands them.
+ */
+@Component
+public class RecipeCommandCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public RecipeCommandCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public record Command(RecipeProto.RecipeCommand.Op op, UUID id, Recipe recipe, long timestamp, String commandId) {
+    }
+
+    public Message encode(RecipeProto.RecipeCommand.Op op, Recipe recipe) {
+        // The ID travels once, in the envelope
+        RecipeProto.RecipeCommand.Builder command = newCommand(op, recipe.getId())
+                .setRecipe(RecipeProto.Recipe.newBuilder()
+                        .setName(recipe.getName())
+                        .setIngredients(recipe.getIngredients())
+                        .setCookingTime(recipe.getCookingTime()));
+        return toMessage(command.build());
+    }
+
+    public Message encodeDelete(UUID id) {
+        return toMessage(newCommand(RecipeProto.RecipeCommand.Op.DELETE, id).build());
+    }
+
+    public Command decode(Message message) throws IOException {
+        if (recipeCommandContentType.equals(message.getMessageProperties().getContentType())) {
+            RecipeProto.RecipeCommand command = RecipeProto.RecipeCommand.parseFrom(message.getBody());
+            if (command.getVersion() != recipeCommandVersion) {
+                throw new AmqpRejectAndDontRequeueException("Unsupported recipe command version "
+                        + command.getVersion() + ", expected " + recipeCommandVersion);
+            }
+            UUID id = command.getId().isEmpty() ? null : UUID.fromString(command.getId());
+            Recipe recipe = null;
+            if (command.hasRecipe()) {
+                RecipeProto.Recipe proto = command.getRecipe();
+                recipe = new Recipe(id, proto.getName(), proto.getIngredients(), proto.getCookingTime());
+            }
+            return new Command(command.getOp(), id, recipe, command.getTimestamp(), command.getCommandId());
+        }
+        return decodeLegacy(message.getBody());
+    }
+
+    private Command decodeLegacy(byte[] body) throws IOException {
+        UUID id = parseId(new String(body, StandardCharsets.UTF_8).trim());
+        if (id != null) {
+            return legacyCommand(id, null);
+        }
+        JsonNode node = objectMapper.readTree(body);
+        if (node.isTextual()) {
+            // Either a JSON-quoted ID or a byte[] payload the JSON converter wrote as base64
+            id = parseId(node.asText());
+            return id != null ? legacyCommand(id, null) : decodeLegacy(Base64.getDecoder().decode(node.asText()));
+        }
+        Recipe recipe = objectMapper.treeToValue(node, Recipe.class);
+        return legacyCommand(recipe.getId(), recipe);
+    }
+
+    private static Command legacyCommand(UUID id, Recipe recipe) {
+        return new Command(RecipeProto.RecipeCommand.Op.OP_UNSPECIFIED, id, recipe, 0L, "");
+    }
+
+    private static UUID parseId(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static RecipeProto.RecipeCommand.Builder newCommand(RecipeProto.RecipeCommand.Op op, UUID id) {
+        return RecipeProto.RecipeCommand.newBuilder()
+                .setVersion(recipeCommandVersion)
+                .setOp(op)
+                .setId(id.toString())
+                .setTimestamp(System.currentTimeMillis())
+                .setCommandId(UUID.randomUUID().toString());
+    }
+
+    private static Message toMessage(RecipeProto.RecipeCommand command) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(recipeCommandContentType);
+        return new Message(command.toByteArray(), properties);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.domain.config.RabbitMQConfig.recipeCommandPublishedAtHeader;
+
+/**
+ * Timers for the recipe write path on the consumer side:
+ * <ul>
+ *     <li>{@code recipe.commands.queue.dwell}: publish (the {@code x-published-at} header) to delivery, per queue</li>
+ *     <li>{@code recipe.commands.apply}: applying a command, or a run of them in batch mode, per op and outcome</li>
+ *     <li>{@code recipe.commands.end_to_end}: the gateway accepting the write (the command's timestamp) to its commit, per op</li>
+ * </ul>
+ * Dwell and end-to-end compare wall clocks of different hosts, so they are only as exact as their clock sync;
+ * messages without the timestamps (legacy publishers) are left out.
+ */
+@Component
+public class RecipeCommandMetrics {
+
+    // Outcomes of applying a command: it changed a row, it changed nothing (duplicate create, unknown id), or it threw
+    public static final String APPLIED = "applied";
+    public static final String SKIPPED = "skipped";
+    public static final String FAILED = "failed";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> dwellTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> applyTimers = new ConcurrentHashMap<>();
+    private final Map<RecipeProto.RecipeCommand.Op, Timer> endToEndTimers = new ConcurrentHashMap<>();
+
+    public RecipeCommandMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void received(Message message) {
+        if (!(message.getMessageProperties().getHeader(recipeCommandPublishedAtHeader) instanceof Number publishedAt)) {
+            return;
+        }
+        String queue = String.valueOf(message.getMessageProperties().getConsumerQueue());
+        dwellTimers.computeIfAbsent(queue, name -> Timer.builder("recipe.commands.queue.dwell")
+                        .description("Time recipe commands spent in the queue before delivery")
+                        .tag("queue", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(sinceEpochMillis(publishedAt.longValue()), TimeUnit.MILLISECONDS);
+    }
+
+    public Timer.Sample startApply() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void applied(RecipeProto.RecipeCommand.Op op, String outcome, Timer.Sample sample) {
+        sample.stop(applyTimers.computeIfAbsent(op.name() + ':' + outcome, key -> Timer.builder("recipe.commands.apply")
+                .description("Time taken to apply recipe commands")
+                .tag("op", tagValue(op))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)));
+    }
+
+    /**
+     * Records the end-to-end latency of a command whose write has committed.
+     */
+    public void committed(RecipeProto.RecipeCommand.Op op, long requestTimestamp) {
+        if (requestTimestamp <= 0) {
+            return;
+        }
+        endToEndTimers.computeIfAbsent(op, key -> Timer.builder("recipe.commands.end_to_end")
+                        .description("Time from the gateway accepting a recipe write to its commit")
+                        .tag("op", tagValue(key))
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(sinceEpochMillis(requestTimestamp), TimeUnit.MILLISECONDS);
+    }
+
+    private static long sinceEpochMillis(long epochMillis) {
+        // Clock skew between hosts can make this negative
+        return Math.max(0, System.currentTimeMillis() - epochMillis);
+    }
+
+    private static String tagValue(RecipeProto.RecipeCommand.Op op) {
+        return op.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.*;
+
+/**
+ * Publishes recipe commands to the partition queue of their recipe, so create, update and delete
+ * of one recipe are consumed in the order they were sent.
+ */
+@Component
+public class RecipeCommandPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final RecipeCommandCodec commandCodec;
+    private final int partitions;
+
+    public RecipeCommandPublisher(RabbitTemplate rabbitTemplate,
+                                  RecipeCommandCodec commandCodec,
+                                  @Value("${recipe.commands.partitions:4}") int partitions) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.commandCodec = commandCodec;
+        this.partitions = partitions;
+    }
+
+    public void create(Recipe recipe) {
+        send(recipe.getId(), commandCodec.encode(RecipeProto.RecipeCommand.Op.CREATE, recipe));
+    }
+
+    public void update(Recipe recipe) {
+        send(recipe.getId(), commandCodec.encode(RecipeProto.RecipeCommand.Op.UPDATE, recipe));
+    }
+
+    public void delete(UUID id) {
+        send(id, commandCodec.encodeDelete(id));
+    }
+
+    private void send(UUID id, Message message) {
+        int partition = recipeCommandPartition(id.toString(), partitions);
+        message.getMessageProperties().setHeader(recipeCommandPublishedAtHeader, System.currentTimeMillis());
+        rabbitTemplate.send(recipeCommandExchangeName, recipeCommandRoutingKey(partition), message);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.example.domain.config.RabbitMQConfig.recipeCommandContentType;
+import static com.example.domain.config.RabbitMQConfig.recipeEventExchangeName;
+
+/**
+ * Announces recipe writes once they have committed. Events of one recipe are published by the consumer
+ * of its command partition, so they go out in the order the writes were applied.
+ * <p>
+ * Publishes use publisher confirms: the caller waits until the broker has confirmed its events, and events
+ * that were nacked or not confirmed within {@code confirm-timeout} are sent again, up to {@code max-attempts}
+ * times. Only then is an event given up on (logged and counted): the write itself has already happened,
+ * and caches fed by the events fall back to their TTL.
+ */
+@Slf4j
+@Component
+public class RecipeEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Duration confirmTimeout;
+    private final int maxAttempts;
+
+    private final Counter acked;
+    private final Counter resent;
+    private final Counter dropped;
+
+    public RecipeEventPublisher(RabbitTemplate rabbitTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${recipe.events.publish.confirm-timeout:PT5S}") Duration confirmTimeout,
+                                @Value("${recipe.events.publish.max-attempts:3}") int maxAttempts) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirmTimeout = confirmTimeout;
+        this.maxAttempts = maxAttempts;
+        this.acked = publishCounter(meterRegistry, "ack");
+        this.resent = publishCounter(meterRegistry, "resent");
+        this.dropped = publishCounter(meterRegistry, "dropped");
+    }
+
+    public void upserted(Recipe recipe, long version, String commandId) {
+        publish(List.of(upsertedEvent(recipe, version, commandId)));
+    }
+
+    public void deleted(RecipeVersion deletion, String commandId) {
+        publish(List.of(deletedEvent(deletion, commandId)));
+    }
+
+    public static RecipeProto.RecipeEvent upsertedEvent(Recipe recipe, long version, String commandId) {
+        return newEvent(RecipeProto.RecipeEvent.Type.UPSERTED, recipe.getId(), version, commandId)
+                .setRecipe(RecipeProto.Recipe.newBuilder()
+                        .setId(recipe.getId().toString())
+                        .setName(Objects.requireNonNullElse(recipe.getName(), ""))
+                        .setIngredients(Objects.requireNonNullElse(recipe.getIngredients(), ""))
+                        .setCookingTime(recipe.getCookingTime())
+                        .setVersion(version))
+                .build();
+    }
+
+    public static RecipeProto.RecipeEvent deletedEvent(RecipeVersion deletion, String commandId) {
+        return newEvent(RecipeProto.RecipeEvent.Type.DELETED, deletion.id(), deletion.version(), commandId).build();
+    }
+
+    /**
+     * Sends all events, then waits for their confirms, resending the ones that were not confirmed. Events are
+     * expected to be of distinct recipes: a resent event may overtake a later one of the same recipe.
+     */
+    public void publish(List<RecipeProto.RecipeEvent> events) {
+        List<RecipeProto.RecipeEvent> pending = events;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            Map<RecipeProto.RecipeEvent, CorrelationData> sent = new LinkedHashMap<>();
+            pending.forEach(event -> sent.put(event, send(event)));
+            long deadline = System.nanoTime() + confirmTimeout.toNanos();
+            List<RecipeProto.RecipeEvent> unconfirmed = new ArrayList<>();
+            sent.forEach((event, correlation) -> {
+                if (!confirmed(event, correlation, deadline)) {
+                    unconfirmed.add(event);
+                }
+            });
+            acked.increment(sent.size() - unconfirmed.size());
+            if (!unconfirmed.isEmpty() && attempt >= maxAttempts) {
+                dropped.increment(unconfirmed.size());
+                for (RecipeProto.RecipeEvent event : unconfirmed) {
+                    log.error("Giving up on {} event for recipe {} (version {}) after {} attempts",
+                            event.getType(), event.getId(), event.getVersion(), attempt);
+                }
+                return;
+            }
+            resent.increment(unconfirmed.size());
+            pending = unconfirmed;
+        }
+    }
+
+    // Null when the send itself failed, e.g. while the connection is down
+    private CorrelationData send(RecipeProto.RecipeEvent event) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(recipeCommandContentType);
+        CorrelationData correlation = new CorrelationData();
+        try {
+            rabbitTemplate.send(recipeEventExchangeName, "", new Message(event.toByteArray(), properties), correlation);
+            return correlation;
+        } catch (Exception e) {
+            log.warn("Failed to publish {} event for recipe {} (version {})", event.getType(), event.getId(), event.getVersion(), e);
+            return null;
+        }
+    }
+
+    private boolean confirmed(RecipeProto.RecipeEvent event, CorrelationData correlation, long deadline) {
+        if (correlation == null) {
+            return false;
+        }
+        try {
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                log.warn("{} event for recipe {} nacked by broker: {}", event.getType(), event.getId(), confirm.getReason());
+            }
+            return confirm.isAck();
+        } catch (TimeoutException e) {
+            log.warn("{} event for recipe {} not confirmed within {}", event.getType(), event.getId(), confirmTimeout);
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("{} event for recipe {} failed", event.getType(), event.getId(), e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static RecipeProto.RecipeEvent.Builder newEvent(RecipeProto.RecipeEvent.Type type, UUID id, long version, String commandId) {
+        return RecipeProto.RecipeEvent.newBuilder()
+                .setType(type)
+                .setId(id.toString())
+                .setVersion(version)
+                .setCommandId(commandId == null ? "" : commandId)
+                .setTimestamp(System.currentTimeMillis());
+    }
+
+    private static Counter publishCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("recipe.events.publish")
+                .description("Committed recipe event publishes by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Keeps this instance's in-memory views in step with the committed writes of every domain instance,
+ * its own included: each instance consumes the event fanout through its own auto-delete queue.
+ * Events may arrive late or twice; the views keep the newest write version per recipe and ignore older ones.
+ */
+@Slf4j
+@Component
+public class RecipeEventSubscriber {
+
+    private final IngredientIndex ingredientIndex;
+    private final RecipeReadModel readModel;
+
+    public RecipeEventSubscriber(IngredientIndex ingredientIndex, RecipeReadModel readModel) {
+        this.ingredientIndex = ingredientIndex;
+        this.readModel = readModel;
+    }
+
+    @RabbitListener(queues = "#{recipeEventLocalQueue.name}")
+    public void onEvent(Message message) {
+        RecipeProto.RecipeEvent event;
+        try {
+            event = RecipeProto.RecipeEvent.parseFrom(message.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            throw new AmqpRejectAndDontRequeueException("Unreadable recipe event", e);
+        }
+        log.debug("Applying {} event for recipe {} (version {})", event.getType(), event.getId(), event.getVersion());
+
+        UUID id = UUID.fromString(event.getId());
+        switch (event.getType()) {
+            case UPSERTED -> {
+                ingredientIndex.put(id, event.getRecipe().getIngredients(), event.getVersion());
+                readModel.put(event.getRecipe(), event.getVersion());
+            }
+            case DELETED -> {
+                ingredientIndex.remove(id, event.getVersion());
+                readModel.remove(id, event.getVersion());
+            }
+            default -> log.warn("Skipping recipe event of unknown type {} for {}", event.getType(), event.getId());
+        }
+    }
+}
@@ -1,65 +1,174 @@
 package com.example.domain.service;
 
+import com.example.domain.grpc.RecipeProto;
 import com.example.domain.recipe.Recipe;
 import com.example.domain.recipe.RecipeRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.domain.recipe.RecipeVersion;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 
 import static com.example.domain.config.RabbitMQConfig.*;
 
+/**
+ * Applies recipe commands one message at a time. Each command partition gets its own single-threaded
+ * consumer, so commands for one recipe are applied in order while partitions run in parallel.
+ * The per-operation queues are still consumed so messages published before the partitioned stream drain.
+ * Every write that changed a row is announced with a committed event carrying the recipe's new version.
+ * A command that fails is retried and then dead-lettered (see {@code RabbitMQConfig}), never acked and dropped.
+ */
 @Service
 @Slf4j
-public class RecipeExchangeListener {
+@ConditionalOnProperty(name = "recipe.consumer.batch.enabled", havingValue = "false", matchIfMissing = true)
+public class RecipeExchangeListener implements RabbitListenerConfigurer {
 
     private final RecipeRepository recipeRepository;
-    private final ObjectMapper objectMapper;
+    private final RecipeCommandCodec commandCodec;
+    private final RecipeEventPublisher eventPublisher;
+    private final RecipeCommandMetrics commandMetrics;
+    private final int partitions;
 
-    public RecipeExchangeListener(RecipeRepository recipeRepository, ObjectMapper objectMapper) {
+    public RecipeExchangeListener(RecipeRepository recipeRepository,
+                                  RecipeCommandCodec commandCodec,
+                                  RecipeEventPublisher eventPublisher,
+                                  RecipeCommandMetrics commandMetrics,
+                                  @Value("${recipe.commands.partitions:4}") int partitions) {
         this.recipeRepository = recipeRepository;
-        this.objectMapper = objectMapper;
+        this.commandCodec = commandCodec;
+        this.eventPublisher = eventPublisher;
+        this.commandMetrics = commandMetrics;
+        this.partitions = partitions;
     }
 
-    @RabbitListener(queues = recipePostRequestQueueName)
-    public void onPostMethod(byte[] message) {
-        try {
-            log.info("Received POST request: {}", new String(message));
-            Recipe recipe = objectMapper.readValue(message, Recipe.class);
-            recipeRepository.save(recipe);
-            log.info("Recipe successfully created: {}", recipe);
-        } catch (Exception e) {
-            log.error("Error processing POST message", e);
+    @Override
+    public void configureRabbitListeners(@NonNull RabbitListenerEndpointRegistrar registrar) {
+        for (int partition = 0; partition < partitions; partition++) {
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId("recipeCommandPartition-" + partition);
+            endpoint.setQueueNames(recipeCommandQueueName(partition));
+            endpoint.setConcurrency("1");
+            endpoint.setMessageListener(this::onCommand);
+            registrar.registerEndpoint(endpoint);
         }
     }
 
+    public void onCommand(Message message) {
+        process(message, null, "command");
+    }
+
+    @RabbitListener(queues = recipePostRequestQueueName)
+    public void onPostMethod(Message message) {
+        process(message, RecipeProto.RecipeCommand.Op.CREATE, "POST");
+    }
+
     @RabbitListener(queues = recipePutRequestQueueName)
-    public void onPutMethod(byte[] message) {
+    public void onPutMethod(Message message) {
+        process(message, RecipeProto.RecipeCommand.Op.UPDATE, "PUT");
+    }
+
+    @RabbitListener(queues = recipeDeleteRequestQueueName)
+    public void onDeleteMethod(Message message) {
+        process(message, RecipeProto.RecipeCommand.Op.DELETE, "DELETE");
+    }
+
+    /**
+     * Decodes and applies one message, as {@code queueOp} on the legacy per-operation queues or else as the
+     * command's own op. Failures are rethrown rather than acked: the container retries the message and
+     * then rejects it to the dead-letter queue.
+     */
+    private void process(Message message, RecipeProto.RecipeCommand.Op queueOp, String kind) {
+        commandMetrics.received(message);
+        Timer.Sample sample = commandMetrics.startApply();
+        RecipeProto.RecipeCommand.Op op = queueOp != null ? queueOp : RecipeProto.RecipeCommand.Op.OP_UNSPECIFIED;
         try {
-            log.info("Received PUT request: {}", new String(message));
-            Recipe recipe = objectMapper.readValue(message, Recipe.class);
-            if (recipeRepository.existsById(recipe.getId())) {
-                recipeRepository.save(recipe);
-                log.info("Recipe successfully updated: {}", recipe);
-            } else {
-                log.warn("Recipe not found for update: {}", recipe.getId());
+            RecipeCommandCodec.Command command = decode(message);
+            if (queueOp == null) {
+                op = command.op();
             }
-        } catch (Exception e) {
-            log.error("Error processing PUT message", e);
+            log.info("Received {} request: op={}, id={}", kind, command.op(), command.id());
+            apply(op, command, sample);
+        } catch (RuntimeException e) {
+            log.error("Error processing {} message", kind, e);
+            commandMetrics.applied(op, RecipeCommandMetrics.FAILED, sample);
+            throw e;
         }
     }
 
-    @RabbitListener(queues = recipeDeleteRequestQueueName)
-    public void onDeleteMethod(byte[] message) {
+    // A message that cannot be decoded never will be, so it is not retried
+    private RecipeCommandCodec.Command decode(Message message) {
         try {
-            log.info("Received DELETE request: {}", new String(message));
-            UUID id = UUID.fromString(new String(message));
-            recipeRepository.deleteById(id);
-            log.info("Recipe successfully deleted for ID: {}", id);
-        } catch (Exception e) {
-            log.error("Error processing DELETE message", e);
+            return commandCodec.decode(message);
+        } catch (IOException e) {
+            throw new AmqpRejectAndDontRequeueException("Cannot decode recipe command", e);
+        }
+    }
+
+    /**
+     * Applies the command as {@code op} (the op of the queue it came from, for the legacy per-operation queues)
+     * and records how long that took and, if it wrote a row, its end-to-end latency.
+     */
+    private void apply(RecipeProto.RecipeCommand.Op op, RecipeCommandCodec.Command command, Timer.Sample sample) {
+        boolean written = switch (op) {
+            case CREATE -> create(command.recipe(), command.commandId());
+            case UPDATE -> update(command.recipe(), command.commandId());
+            case DELETE -> delete(command.id(), command.commandId());
+            default -> {
+                log.warn("Skipping command with unknown op {} for ID: {}", op, command.id());
+                yield false;
+            }
+        };
+        commandMetrics.applied(op, written ? RecipeCommandMetrics.APPLIED : RecipeCommandMetrics.SKIPPED, sample);
+        if (written) {
+            commandMetrics.committed(op, command.timestamp());
+        }
+    }
+
+    private boolean create(Recipe recipe, String commandId) {
+        if (recipe.getId() == null) {
+            recipe.setId(UUID.randomUUID());
+        }
+        List<RecipeVersion> inserted = recipeRepository.insertAll(List.of(recipe));
+        if (inserted.isEmpty()) {
+            log.warn("Recipe already exists, skipping create: {}", recipe.getId());
+            return false;
+        }
+        eventPublisher.upserted(recipe, inserted.get(0).version(), commandId);
+        log.info("Recipe successfully created: {}", recipe);
+        return true;
+    }
+
+    private boolean update(Recipe recipe, String commandId) {
+        List<RecipeVersion> updated = recipeRepository.updateAll(List.of(recipe));
+        if (updated.isEmpty()) {
+            log.warn("Recipe not found for update: {}", recipe.getId());
+            return false;
+        }
+        eventPublisher.upserted(recipe, updated.get(0).version(), commandId);
+        log.info("Recipe successfully updated: {}", recipe);
+        return true;
+    }
+
+    private boolean delete(UUID id, String commandId) {
+        List<RecipeVersion> deleted = recipeRepository.deleteAllByIds(List.of(id));
+        if (deleted.isEmpty()) {
+            log.warn("Recipe not found for delete: {}", id);
+            return false;
         }
+        eventPublisher.deleted(deleted.get(0), commandId);
+        log.info("Recipe successfully deleted for ID: {}", id);
+        return true;
     }
 }
@@ -0,0 +1,354 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Optional in-memory copy of the recipes table ({@code recipe.read-model.enabled}) from which GetRecipe
+ * and ListRecipes are answered without a database round trip or protobuf encoding.
+ * <p>
+ * Recipes live in an open-addressing hash table keyed by the two halves of their UUID, kept in parallel
+ * primitive arrays, so an entry costs one object: its value. The value is the recipe already encoded as a
+ * {@code RecipeResponse}; {@code RecipeListResponse} keeps its recipes in the same field number, so the
+ * list response is all values back to back. Like {@link IngredientIndex} the model is loaded at startup
+ * and periodically, and patched in between from the committed-write events of all domain instances
+ * ({@link RecipeEventSubscriber}). Entries remember their write version, and a delete leaves an empty entry
+ * with its version, so a change older than the stored one is ignored. A rebuild carries over deletes younger
+ * than {@code delete-grace} and drops older ones.
+ */
+@Slf4j
+@Component
+public class RecipeReadModel {
+
+    private static final String LOAD_SQL = "SELECT id, name, ingredients, cooking_time, version FROM recipes";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration deleteGrace;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Null until the first load has finished; reads go to the database until then
+    private Table table;
+    // Changes applied while a rebuild is loading, replayed onto the new table before it is swapped in
+    private List<Change> changesDuringRebuild;
+
+    public RecipeReadModel(JdbcTemplate jdbcTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${recipe.read-model.enabled:false}") boolean enabled,
+                           @Value("${recipe.read-model.delete-grace:PT15M}") Duration deleteGrace) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.deleteGrace = deleteGrace;
+        if (enabled) {
+            Gauge.builder("recipe.read_model.recipes", this, model -> model.stat(Table::size))
+                    .description("Recipes held by the in-memory read model")
+                    .register(meterRegistry);
+            Gauge.builder("recipe.read_model.memory", this, model -> model.stat(Table::retainedBytes))
+                    .description("Estimated heap retained by the in-memory read model")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The encoded {@code RecipeResponse} for a recipe, or {@code null} when the model is not loaded or does
+     * not hold it. The array is shared and must not be modified.
+     */
+    public byte[] getRecipeResponse(UUID id) {
+        lock.readLock().lock();
+        try {
+            return table == null ? null : table.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The encoded {@code RecipeListResponse} of all recipes, or {@code null} when the model is not loaded.
+     */
+    public byte[] getListRecipesResponse() {
+        lock.readLock().lock();
+        try {
+            return table == null ? null : table.concatenatedValues();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(RecipeProto.Recipe recipe, long version) {
+        if (enabled) {
+            UUID id = UUID.fromString(recipe.getId());
+            apply(new Change(id.getMostSignificantBits(), id.getLeastSignificantBits(), version,
+                    encode(id, recipe.getName(), recipe.getIngredients(), recipe.getCookingTime(), version),
+                    System.nanoTime()));
+        }
+    }
+
+    /**
+     * Drops a deleted recipe; {@code version} is the version of the deletion.
+     */
+    public void remove(UUID id, long version) {
+        if (enabled) {
+            apply(new Change(id.getMostSignificantBits(), id.getLeastSignificantBits(), version, null,
+                    System.nanoTime()));
+        }
+    }
+
+    /**
+     * Reloads the model, logging instead of throwing so a database outage only leaves it stale.
+     */
+    @Observed(name = "recipe.read_model", contextualName = "read-model rebuild",
+            lowCardinalityKeyValues = {"operation", "rebuild"})
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${recipe.read-model.rebuild-interval:PT5M}",
+            initialDelayString = "${recipe.read-model.rebuild-interval:PT5M}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to rebuild recipe read model", e);
+        }
+    }
+
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        Table fresh = new Table();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+            // Before the load, so rows it read from before these deletes are ignored
+            if (table != null) {
+                table.recentDeletes(start - deleteGrace.toNanos()).forEach(fresh::apply);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean loaded = false;
+        try {
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                UUID id = rs.getObject(1, UUID.class);
+                long version = rs.getLong(5);
+                fresh.apply(new Change(id.getMostSignificantBits(), id.getLeastSignificantBits(), version,
+                        encode(id, rs.getString(2), rs.getString(3), rs.getInt(4), version), start));
+            });
+            loaded = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    changesDuringRebuild.forEach(fresh::apply);
+                    table = fresh;
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Recipe read model rebuilt: {} recipes, ~{} KiB in {} ms", fresh.size(),
+                fresh.retainedBytes() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (table != null) {
+                table.apply(change);
+            }
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private double stat(ToLongFunction<Table> statistic) {
+        lock.readLock().lock();
+        try {
+            return table == null ? 0 : statistic.applyAsLong(table);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static byte[] encode(UUID id, String name, String ingredients, int cookingTime, long version) {
+        return RecipeProto.RecipeResponse.newBuilder()
+                .setRecipe(RecipeProto.Recipe.newBuilder()
+                        .setId(id.toString())
+                        .setName(Objects.requireNonNullElse(name, ""))
+                        .setIngredients(Objects.requireNonNullElse(ingredients, ""))
+                        .setCookingTime(cookingTime)
+                        .setVersion(version))
+                .build()
+                .toByteArray();
+    }
+
+    /**
+     * A recipe as of a write, and when ({@link System#nanoTime()}) it reached the model; {@code value} is
+     * {@code null} when the write deleted it.
+     */
+    private record Change(long idHigh, long idLow, long version, byte[] value, long appliedAt) {
+    }
+
+    /**
+     * Linear-probing hash table. A deleted recipe keeps its slot, with an empty value and the version of the
+     * delete; the table is rebuilt from scratch periodically, which drops those past the grace period.
+     */
+    private static final class Table {
+
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final byte[] DELETED = new byte[0];
+        // Per slot: three longs and a (compressed) reference; per value: the array header
+        private static final int SLOT_BYTES = 3 * Long.BYTES + 4;
+        private static final int ARRAY_HEADER_BYTES = 16;
+
+        private long[] idHighs = new long[INITIAL_CAPACITY];
+        private long[] idLows = new long[INITIAL_CAPACITY];
+        private long[] versions = new long[INITIAL_CAPACITY];
+        private byte[][] values = new byte[INITIAL_CAPACITY][];
+        // Deleted recipes, by when the delete was applied; few, so kept aside rather than per slot
+        private final Map<UUID, Long> deletedAt = new HashMap<>();
+        // Recipes held, and slots used by them and by deleted ones
+        private int size;
+        private int usedSlots;
+        private long valueBytes;
+
+        private long size() {
+            return size;
+        }
+
+        private long retainedBytes() {
+            return (long) values.length * SLOT_BYTES + (long) size * ARRAY_HEADER_BYTES + valueBytes;
+        }
+
+        private byte[] get(long idHigh, long idLow) {
+            byte[] value = values[slot(idHigh, idLow)];
+            return value == DELETED ? null : value;
+        }
+
+        // Deleted entries are empty, so they add nothing
+        private byte[] concatenatedValues() {
+            if (valueBytes > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+            byte[] result = new byte[(int) valueBytes];
+            int offset = 0;
+            for (byte[] value : values) {
+                if (value != null) {
+                    System.arraycopy(value, 0, result, offset, value.length);
+                    offset += value.length;
+                }
+            }
+            return result;
+        }
+
+        private void apply(Change change) {
+            int slot = slot(change.idHigh(), change.idLow());
+            byte[] current = values[slot];
+            if (current != null && versions[slot] > change.version()) {
+                return;
+            }
+            byte[] value = change.value() == null ? DELETED : change.value();
+            if (current == null) {
+                if ((usedSlots + 1) * 4L > values.length * 3L) {
+                    resize();
+                    slot = slot(change.idHigh(), change.idLow());
+                }
+                idHighs[slot] = change.idHigh();
+                idLows[slot] = change.idLow();
+                usedSlots++;
+            } else {
+                valueBytes -= current.length;
+                if (current != DELETED) {
+                    size--;
+                }
+            }
+            if (value != DELETED) {
+                size++;
+            }
+            versions[slot] = change.version();
+            values[slot] = value;
+            valueBytes += value.length;
+            if (value == DELETED) {
+                deletedAt.put(new UUID(change.idHigh(), change.idLow()), change.appliedAt());
+            } else if (current == DELETED) {
+                deletedAt.remove(new UUID(change.idHigh(), change.idLow()));
+            }
+        }
+
+        private List<Change> recentDeletes(long since) {
+            List<Change> deletes = new ArrayList<>();
+            deletedAt.forEach((id, at) -> {
+                if (at - since >= 0) {
+                    long idHigh = id.getMostSignificantBits();
+                    long idLow = id.getLeastSignificantBits();
+                    deletes.add(new Change(idHigh, idLow, versions[slot(idHigh, idLow)], null, at));
+                }
+            });
+            return deletes;
+        }
+
+        // Slot holding the id, or the empty slot where it would go
+        private int slot(long idHigh, long idLow) {
+            int mask = values.length - 1;
+            int slot = home(idHigh, idLow, mask);
+            while (values[slot] != null && (idHighs[slot] != idHigh || idLows[slot] != idLow)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize() {
+            long[] oldHighs = idHighs;
+            long[] oldLows = idLows;
+            long[] oldVersions = versions;
+            byte[][] oldValues = values;
+            int capacity = oldValues.length * 2;
+            idHighs = new long[capacity];
+            idLows = new long[capacity];
+            versions = new long[capacity];
+            values = new byte[capacity][];
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = slot(oldHighs[i], oldLows[i]);
+                    idHighs[slot] = oldHighs[i];
+                    idLows[slot] = oldLows[i];
+                    versions[slot] = oldVersions[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int home(long idHigh, long idLow, int mask) {
+            long hash = (idHigh ^ idLow) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+-- Same table Hibernate used to create with ddl-auto=update
+CREATE TABLE IF NOT EXISTS recipes (
+    id           uuid PRIMARY KEY,
+    name         varchar(255),
+    ingredients  varchar(255),
+    cooking_time integer NOT NULL
+);
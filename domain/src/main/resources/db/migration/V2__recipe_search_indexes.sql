@@ -0,0 +1,21 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Ingredients are stored as one comma-separated string; this normalizes them to a lower-case set
+CREATE OR REPLACE FUNCTION recipe_ingredients(ingredients text) RETURNS text[]
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE AS
+$$
+SELECT coalesce(array_agg(DISTINCT trim(item)) FILTER (WHERE trim(item) <> ''), '{}')
+FROM unnest(string_to_array(lower(ingredients), ',')) AS item
+$$;
+
+-- Name prefix search (lower(name) LIKE 'prefix%')
+CREATE INDEX IF NOT EXISTS recipes_name_trgm_idx ON recipes USING gin (lower(name) gin_trgm_ops);
+
+-- Full-text search over name and ingredients
+CREATE INDEX IF NOT EXISTS recipes_search_tsv_idx ON recipes
+    USING gin (to_tsvector('simple', coalesce(name, '') || ' ' || coalesce(ingredients, '')));
+
+-- Ingredient set containment (recipe_ingredients(ingredients) @> ARRAY[...])
+CREATE INDEX IF NOT EXISTS recipes_ingredients_idx ON recipes USING gin (recipe_ingredients(ingredients));
+
+CREATE INDEX IF NOT EXISTS recipes_cooking_time_idx ON recipes (cooking_time);
@@ -0,0 +1,53 @@
+-- Normalized ingredients: one row per distinct ingredient, linked to the recipes that use it.
+-- recipes.ingredients stays the source of truth; the trigger below derives the links from it
+-- on every write path (single and batched statements, COPY imports).
+CREATE TABLE ingredients (
+    id   serial PRIMARY KEY,
+    name text NOT NULL UNIQUE
+);
+
+CREATE TABLE recipe_ingredient (
+    recipe_id     uuid    NOT NULL REFERENCES recipes (id) ON DELETE CASCADE,
+    ingredient_id integer NOT NULL REFERENCES ingredients (id),
+    PRIMARY KEY (recipe_id, ingredient_id)
+);
+
+CREATE INDEX recipe_ingredient_ingredient_idx ON recipe_ingredient (ingredient_id);
+
+CREATE OR REPLACE FUNCTION sync_recipe_ingredients() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'UPDATE' THEN
+        DELETE FROM recipe_ingredient WHERE recipe_id = NEW.id;
+    END IF;
+
+    INSERT INTO ingredients (name)
+    SELECT unnest(recipe_ingredients(NEW.ingredients))
+    ON CONFLICT (name) DO NOTHING;
+
+    INSERT INTO recipe_ingredient (recipe_id, ingredient_id)
+    SELECT NEW.id, i.id
+    FROM ingredients i
+    WHERE i.name = ANY (recipe_ingredients(NEW.ingredients));
+
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER recipes_sync_ingredients
+    AFTER INSERT OR UPDATE OF ingredients ON recipes
+    FOR EACH ROW
+EXECUTE FUNCTION sync_recipe_ingredients();
+
+-- Backfill existing recipes
+INSERT INTO ingredients (name)
+SELECT DISTINCT unnest(recipe_ingredients(ingredients))
+FROM recipes
+ON CONFLICT (name) DO NOTHING;
+
+INSERT INTO recipe_ingredient (recipe_id, ingredient_id)
+SELECT r.id, i.id
+FROM recipes r
+         CROSS JOIN LATERAL unnest(recipe_ingredients(r.ingredients)) AS item(name)
+         JOIN ingredients i ON i.name = item.name;
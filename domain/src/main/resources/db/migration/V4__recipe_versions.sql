@@ -0,0 +1,9 @@
+-- Version of each recipe, taken from one sequence on every insert, update and delete, so it only ever
+-- grows per recipe. Carried by the committed events the domain publishes after each write.
+CREATE SEQUENCE recipe_version_seq;
+
+-- Added without a default: a volatile one (nextval) would rewrite the whole table under an ACCESS EXCLUSIVE
+-- lock. Setting it afterwards only applies to rows inserted from then on; V5 numbers the existing rows and
+-- V6 makes the column NOT NULL.
+ALTER TABLE recipes ADD COLUMN version bigint;
+ALTER TABLE recipes ALTER COLUMN version SET DEFAULT nextval('recipe_version_seq');
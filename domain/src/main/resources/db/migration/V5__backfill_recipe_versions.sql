@@ -0,0 +1,24 @@
+-- Numbers the recipes that predate V4 in batches of 10000 in id order, committing after each batch so no
+-- lock is held on the whole table. Runs outside a transaction (see the .conf file), which COMMIT needs.
+DO
+$$
+DECLARE
+    from_id uuid;
+    to_id   uuid;
+BEGIN
+    SELECT id INTO from_id FROM recipes ORDER BY id LIMIT 1;
+    WHILE from_id IS NOT NULL LOOP
+        SELECT id INTO to_id
+        FROM (SELECT id FROM recipes WHERE id >= from_id ORDER BY id LIMIT 10000) AS batch
+        ORDER BY id DESC
+        LIMIT 1;
+
+        UPDATE recipes
+        SET version = nextval('recipe_version_seq')
+        WHERE id BETWEEN from_id AND to_id AND version IS NULL;
+        COMMIT;
+
+        SELECT id INTO from_id FROM recipes WHERE id > to_id ORDER BY id LIMIT 1;
+    END LOOP;
+END
+$$;
@@ -0,0 +1,9 @@
+-- SET NOT NULL alone scans the table under an ACCESS EXCLUSIVE lock. Validating a CHECK constraint scans it
+-- under a lock that lets writes through, and SET NOT NULL then relies on the constraint instead of scanning.
+-- Each statement commits on its own (see the .conf file), so the scan does not run under the lock taken to
+-- add the constraint.
+ALTER TABLE recipes DROP CONSTRAINT IF EXISTS recipes_version_not_null;
+ALTER TABLE recipes ADD CONSTRAINT recipes_version_not_null CHECK (version IS NOT NULL) NOT VALID;
+ALTER TABLE recipes VALIDATE CONSTRAINT recipes_version_not_null;
+ALTER TABLE recipes ALTER COLUMN version SET NOT NULL;
+ALTER TABLE recipes DROP CONSTRAINT recipes_version_not_null;
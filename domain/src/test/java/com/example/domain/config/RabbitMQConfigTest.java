@@ -0,0 +1,59 @@
+package com.example.domain.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RabbitMQConfigTest {
+
+    private final MessageRecoverer recoverer = new RabbitMQConfig().rejectToDeadLetterRecoverer();
+
+    @Test
+    void exhaustedMessagesAndBatchesAreRejectedWithoutRequeue() {
+        Message first = new Message(new byte[]{1}, new MessageProperties());
+        Message second = new Message(new byte[]{2}, new MessageProperties());
+        IllegalStateException cause = new IllegalStateException("boom");
+
+        // A recoverer that cannot take a batch would let the retry interceptor ack it
+        assertThat(recoverer).isInstanceOf(MessageBatchRecoverer.class);
+        assertThatThrownBy(() -> ((MessageBatchRecoverer) recoverer).recover(List.of(first, second), cause))
+                .isInstanceOf(ListenerExecutionFailedException.class)
+                .satisfies(e -> assertThat(((ListenerExecutionFailedException) e).getFailedMessages())
+                        .containsExactly(first, second))
+                .cause().isInstanceOf(AmqpRejectAndDontRequeueException.class).hasCause(cause);
+        assertThatThrownBy(() -> recoverer.recover(first, cause))
+                .cause().isInstanceOf(AmqpRejectAndDontRequeueException.class);
+    }
+
+    /**
+     * The gateway publishes and the domain consumes by this function, each with its own copy, so both pin the
+     * same partitions for these ids. Changing it moves recipes between partitions, which reorders their commands
+     * while messages routed the old way are still queued.
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "00000000-0000-0000-0000-000000000000, 0, 0",
+            "123e4567-e89b-12d3-a456-426614174000, 0, 8",
+            "f47ac10b-58cc-4372-a567-0e02b2c3d479, 3, 3",
+            "F47AC10B-58CC-4372-A567-0E02B2C3D479, 3, 3",
+            "6ba7b810-9dad-11d1-80b4-00c04fd430c8, 1, 13",
+            "c9bf9e57-1685-4c89-bafb-ff5af830be8a, 2, 2",
+            "3fa85f64-5717-4562-b3fc-2c963f66afa6, 3, 11",
+            "ffffffff-ffff-ffff-ffff-ffffffffffff, 0, 0"
+    })
+    void recipeCommandPartitionsArePinned(String recipeId, int ofFour, int ofSixteen) {
+        assertThat(RabbitMQConfig.recipeCommandPartition(recipeId, 4)).isEqualTo(ofFour);
+        assertThat(RabbitMQConfig.recipeCommandPartition(recipeId, 16)).isEqualTo(ofSixteen);
+    }
+}
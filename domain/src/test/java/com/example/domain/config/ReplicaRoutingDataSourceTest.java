@@ -0,0 +1,240 @@
+package com.example.domain.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    // The primary's current WAL position, or an exception to fail reading it with
+    private volatile Object primaryLsn = "0/3000100";
+    private final Replica first = new Replica();
+    private final Replica second = new Replica();
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        Statement statement = mock(Statement.class);
+        when(primaryConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenAnswer(invocation -> {
+            if (primaryLsn instanceof SQLException e) {
+                throw e;
+            }
+            return row(primaryLsn);
+        });
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", first.dataSource);
+        replicas.put("replica-2", second.dataSource);
+        routing = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(5), meterRegistry);
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenUsableReplicas() throws SQLException {
+        first.lag = 0.0;
+        second.lag = 1.5;
+        routing.checkReplicas();
+
+        assertThat(readOnlyTargets(4)).containsExactly(first.connection, second.connection,
+                first.connection, second.connection);
+        assertThat(usable("replica-1")).isEqualTo(1);
+        assertThat(meterRegistry.get("recipe.datasource.replica.lag").tag("replica", "replica-2").gauge().value())
+                .isEqualTo(1.5);
+    }
+
+    @Test
+    void writesStayOnThePrimary() throws SQLException {
+        first.lag = 0.0;
+        second.lag = 0.0;
+        routing.checkReplicas();
+
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void readsStayOnThePrimaryUntilTheFirstCheck() throws SQLException {
+        assertThat(readOnlyTargets(2)).containsOnly(primaryConnection);
+        assertThat(fallbacks()).isEqualTo(2);
+    }
+
+    @Test
+    void laggingReplicasGetNoReadsUntilTheyCatchUp() throws SQLException {
+        first.lag = 30.0;
+        second.lag = 0.0;
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(3)).containsOnly(second.connection);
+        assertThat(usable("replica-1")).isZero();
+
+        second.lag = 12.0;
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(2)).containsOnly(primaryConnection);
+        assertThat(fallbacks()).isEqualTo(2);
+
+        first.lag = 4.0;
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(2)).containsOnly(first.connection);
+    }
+
+    @Test
+    void unreachableOrPromotedReplicasGetNoReads() throws SQLException {
+        first.lag = new SQLException("connection refused");
+        // pg_is_in_recovery() is false: no longer a replica
+        second.lag = null;
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(2)).containsOnly(primaryConnection);
+
+        first.lag = 0.0;
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(2)).containsOnly(first.connection);
+    }
+
+    @Test
+    void aDisconnectedReplicaCountsAsCaughtUpOnlyUntilThePrimaryMovesOn() throws SQLException {
+        // Its WAL receiver is gone: it received nothing it has not replayed, and the last replay was a minute ago
+        first.lag = 60.0;
+        first.replayed = "0/3000100";
+        second.lag = 60.0;
+        second.replayed = "0/3000100";
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(2)).containsExactlyInAnyOrder(first.connection, second.connection);
+
+        primaryLsn = "0/3000200";
+        second.replayed = "0/3000200";
+        routing.checkReplicas();
+        assertThat(readOnlyTargets(2)).containsOnly(second.connection);
+        assertThat(usable("replica-1")).isZero();
+        assertThat(meterRegistry.get("recipe.datasource.replica.lag").tag("replica", "replica-1").gauge().value())
+                .isEqualTo(60.0);
+    }
+
+    @Test
+    void withThePrimaryUnreachableTheLagIsTheTimeSinceTheLastReplay() throws SQLException {
+        primaryLsn = new SQLException("connection refused");
+        first.lag = 0.5;
+        first.replayed = "0/3000100";
+        second.lag = 60.0;
+        second.replayed = "0/3000100";
+        routing.checkReplicas();
+
+        assertThat(readOnlyTargets(2)).containsOnly(first.connection);
+    }
+
+    // The connections handed out to consecutive read-only transactions
+    private List<Connection> readOnlyTargets(int reads) throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        List<Connection> targets = new ArrayList<>();
+        for (int i = 0; i < reads; i++) {
+            targets.add(routing.getConnection());
+        }
+        return targets;
+    }
+
+    private double usable(String replica) {
+        return meterRegistry.get("recipe.datasource.replica.usable").tag("replica", replica).gauge().value();
+    }
+
+    private double fallbacks() {
+        return meterRegistry.get("recipe.datasource.replica.fallbacks").counter().count();
+    }
+
+    // A result of one row and one column
+    private static ResultSet row(Object value) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(resultSet.getString(1)).thenReturn(value == null ? null : value.toString());
+        when(resultSet.getDouble(1)).thenReturn(value instanceof Double d ? d : 0.0);
+        when(resultSet.wasNull()).thenReturn(value == null);
+        return resultSet;
+    }
+
+    // Compares WAL positions ("X/Y", two hexadecimal halves)
+    private static int compareLsn(String left, String right) {
+        String[] l = left.split("/");
+        String[] r = right.split("/");
+        int high = Long.compare(Long.parseLong(l[0], 16), Long.parseLong(r[0], 16));
+        return high != 0 ? high : Long.compare(Long.parseLong(l[1], 16), Long.parseLong(r[1], 16));
+    }
+
+    /**
+     * A replica answering the lag query as Postgres would: 0 once it has replayed up to the primary's
+     * position passed in, otherwise lag (seconds since its last replay), null on a primary, or an exception
+     * to fail with.
+     */
+    private static final class Replica {
+
+        private final HikariDataSource dataSource = mock(HikariDataSource.class);
+        private final Connection connection = mock(Connection.class);
+        private volatile Object lag = new SQLException("not checked yet");
+        private volatile String replayed = "0/0";
+        private final AtomicReference<String> caughtUpAt = new AtomicReference<>();
+
+        private Replica() {
+            try {
+                PreparedStatement statement = mock(PreparedStatement.class);
+                when(dataSource.getConnection()).thenAnswer(invocation -> {
+                    if (lag instanceof SQLException e) {
+                        throw e;
+                    }
+                    return connection;
+                });
+                when(connection.prepareStatement(anyString())).thenReturn(statement);
+                doAnswer(invocation -> {
+                    caughtUpAt.set(invocation.getArgument(1));
+                    return null;
+                }).when(statement).setString(eq(1), any());
+                doAnswer(invocation -> {
+                    caughtUpAt.set(null);
+                    return null;
+                }).when(statement).setNull(eq(1), anyInt());
+                when(statement.executeQuery()).thenAnswer(invocation -> row(lag()));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Double lag() {
+            String primaryLsn = caughtUpAt.get();
+            if (lag == null) {
+                return null;
+            }
+            return primaryLsn != null && compareLsn(replayed, primaryLsn) >= 0 ? 0.0 : (Double) lag;
+        }
+    }
+}
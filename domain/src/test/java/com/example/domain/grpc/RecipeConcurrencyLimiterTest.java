@@ -0,0 +1,214 @@
+package com.example.domain.grpc;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the interceptor directly: admitted calls are held open by the test and closed after a chosen
+ * latency, so the limit only sees the latencies the test makes up.
+ */
+class RecipeConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ServerCall<?, ?>> admitted = new ArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private RecipeConcurrencyLimiter limiter;
+
+    // Loads the call path once, so the first latencies a test measures are not class loading
+    @BeforeEach
+    void warmUp() {
+        limiter = new RecipeConcurrencyLimiter(new SimpleMeterRegistry(), 10, 2, 100, 1.5, 0.2, 0.5, List.of());
+        for (int i = 0; i < 10; i++) {
+            start(RecipeServiceGrpc.getGetRecipeMethod());
+        }
+        closeAll();
+    }
+
+    @AfterEach
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void growsTheLimitWhileLatencyStaysFlat() throws InterruptedException {
+        limiter = limiter(4, 2, 100, 0.5);
+
+        for (int round = 0; round < 20; round++) {
+            fillAndClose(5);
+        }
+
+        assertThat(limit()).isGreaterThan(8);
+    }
+
+    @Test
+    void shrinksTheLimitWhenLatencyRises() throws InterruptedException {
+        limiter = limiter(40, 4, 100, 0.5);
+        // Long enough for the long-term average to settle near the flat latency
+        for (int round = 0; round < 5; round++) {
+            fillAndClose(5);
+        }
+        double before = limit();
+
+        for (int round = 0; round < 3; round++) {
+            fillAndClose(100);
+        }
+
+        assertThat(limit()).isLessThan(before * 0.75).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    void capsLowPriorityMethodsToTheirShareOfTheLimit() {
+        limiter = limiter(10, 2, 100, 0.5);
+
+        List<Call<?, ?>> lists = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            lists.add(start(RecipeServiceGrpc.getListRecipesMethod()));
+        }
+        List<Call<?, ?>> gets = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            gets.add(start(RecipeServiceGrpc.getGetRecipeMethod()));
+        }
+
+        // 5 list calls fill the low-priority half; lookups take the rest of the limit
+        assertThat(admitted).hasSize(10);
+        verifyRejected(lists.get(5), Status.Code.UNAVAILABLE);
+        lists.subList(0, 5).forEach(RecipeConcurrencyLimiterTest::verifyAdmitted);
+        gets.subList(0, 5).forEach(RecipeConcurrencyLimiterTest::verifyAdmitted);
+        verifyRejected(gets.get(5), Status.Code.UNAVAILABLE);
+        assertThat(rejections("ListRecipes", "limit")).isEqualTo(1);
+        assertThat(rejections("GetRecipe", "limit")).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsCallsWhoseDeadlineIsShorterThanTheServiceTime() throws Exception {
+        limiter = limiter(10, 2, 100, 0.5);
+
+        // No service time known yet: admitted whatever the deadline
+        Call<?, ?> first = withDeadline(20, () -> start(RecipeServiceGrpc.getGetRecipeMethod()));
+        verifyAdmitted(first);
+        Thread.sleep(50);
+        closeAll();
+
+        Call<?, ?> hurried = withDeadline(5, () -> start(RecipeServiceGrpc.getGetRecipeMethod()));
+        Call<?, ?> patient = withDeadline(5000, () -> start(RecipeServiceGrpc.getGetRecipeMethod()));
+        Call<?, ?> otherMethod = withDeadline(5, () -> start(RecipeServiceGrpc.getListRecipesMethod()));
+
+        verifyRejected(hurried, Status.Code.DEADLINE_EXCEEDED);
+        verifyAdmitted(patient);
+        verifyAdmitted(otherMethod);
+        assertThat(rejections("GetRecipe", "deadline")).isEqualTo(1);
+        assertThat(meterRegistry.get("recipe.grpc.limiter.in_flight").gauge().value()).isEqualTo(2);
+    }
+
+    private RecipeConcurrencyLimiter limiter(int initial, int min, int max, double lowPriorityShare) {
+        return new RecipeConcurrencyLimiter(meterRegistry, initial, min, max, 1.5, 0.2, lowPriorityShare,
+                List.of("ListRecipes"));
+    }
+
+    // Admits as many lookups as the limit allows, then completes them all after about latencyMillis
+    private void fillAndClose(long latencyMillis) throws InterruptedException {
+        int calls = (int) limit();
+        for (int i = 0; i < calls; i++) {
+            start(RecipeServiceGrpc.getGetRecipeMethod());
+        }
+        assertThat(admitted).hasSize(calls);
+        Thread.sleep(latencyMillis);
+        closeAll();
+    }
+
+    private void closeAll() {
+        admitted.forEach(call -> call.close(Status.OK, new Metadata()));
+        admitted.clear();
+    }
+
+    private <ReqT, RespT> Call<ReqT, RespT> start(MethodDescriptor<ReqT, RespT> method) {
+        Call<ReqT, RespT> call = new Call<>(method);
+        limiter.interceptCall(call, new Metadata(), (limited, headers) -> {
+            admitted.add(limited);
+            return new ServerCall.Listener<>() {
+            };
+        });
+        return call;
+    }
+
+    private Call<?, ?> withDeadline(long millis, Callable<Call<?, ?>> start)
+            throws Exception {
+        Context.CancellableContext context = Context.current().withDeadlineAfter(millis, TimeUnit.MILLISECONDS, scheduler);
+        try {
+            return context.call(start);
+        } finally {
+            context.cancel(null);
+        }
+    }
+
+    private double limit() {
+        return meterRegistry.get("recipe.grpc.limiter.limit").gauge().value();
+    }
+
+    private double rejections(String method, String reason) {
+        return meterRegistry.get("recipe.grpc.limiter.rejections").tag("method", method).tag("reason", reason)
+                .counter().count();
+    }
+
+    private static void verifyAdmitted(Call<?, ?> call) {
+        assertThat(call.status).isNull();
+    }
+
+    private static void verifyRejected(Call<?, ?> call, Status.Code code) {
+        assertThat(call.status.getCode()).isEqualTo(code);
+    }
+
+    // A plain call rather than a mock, so the latencies the limiter measures are the ones the test sleeps
+    private static final class Call<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+
+        private final MethodDescriptor<ReqT, RespT> method;
+        private Status status;
+
+        private Call(MethodDescriptor<ReqT, RespT> method) {
+            this.method = method;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
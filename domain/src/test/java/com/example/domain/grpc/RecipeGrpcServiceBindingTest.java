@@ -0,0 +1,122 @@
+package com.example.domain.grpc;
+
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeRepository;
+import com.example.domain.service.IngredientIndex;
+import com.example.domain.service.RecipeCommandPublisher;
+import com.example.domain.service.RecipeEventPublisher;
+import com.example.domain.service.RecipeReadModel;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * GetRecipe and ListRecipes through the bound service, as a client sees them: answered from the read model's
+ * pre-encoded responses once it is loaded, and from the database otherwise.
+ */
+class RecipeGrpcServiceBindingTest {
+
+    private final RecipeRepository repository = mock(RecipeRepository.class);
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    void stop() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void answersFromTheReadModelOnceLoaded() throws IOException {
+        RecipeReadModel readModel = readModel(true);
+        RecipeServiceGrpc.RecipeServiceBlockingStub stub = start(readModel);
+        readModel.rebuild();
+        UUID id = UUID.randomUUID();
+        readModel.put(recipe(id, "Pancakes"), 7);
+
+        RecipeProto.Recipe recipe = stub.getRecipe(request(id)).getRecipe();
+        List<RecipeProto.Recipe> listed = stub.listRecipes(RecipeProto.Empty.getDefaultInstance()).getRecipesList();
+
+        assertThat(recipe).isEqualTo(recipe(id, "Pancakes").toBuilder().setVersion(7).build());
+        assertThat(listed).containsExactly(recipe);
+        verify(repository, never()).findById(any());
+        verify(repository, never()).findAll();
+    }
+
+    @Test
+    void fallsBackToTheDatabaseUntilLoadedAndForRecipesTheModelDoesNotHold() throws IOException {
+        RecipeReadModel readModel = readModel(true);
+        RecipeServiceGrpc.RecipeServiceBlockingStub stub = start(readModel);
+        UUID id = UUID.randomUUID();
+        Recipe stored = new Recipe(id, "Omelette", "eggs", 5, 3L);
+        when(repository.findById(id)).thenReturn(Optional.of(stored));
+        when(repository.findAll()).thenReturn(List.of(stored));
+
+        assertThat(stub.getRecipe(request(id)).getRecipe().getName()).isEqualTo("Omelette");
+        assertThat(stub.listRecipes(RecipeProto.Empty.getDefaultInstance()).getRecipesList()).hasSize(1);
+
+        readModel.rebuild();
+        readModel.put(recipe(id, "Omelette"), 3);
+        readModel.remove(id, 4);
+        stub.getRecipe(request(id));
+        verify(repository, times(2)).findById(id);
+    }
+
+    @Test
+    void leavesTheGeneratedBindingWhenTheReadModelIsDisabled() throws IOException {
+        RecipeServiceGrpc.RecipeServiceBlockingStub stub = start(readModel(false));
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(new Recipe(id, "Crepes", "flour", 10, 2L)));
+
+        assertThat(stub.getRecipe(request(id)).getRecipe().getVersion()).isEqualTo(2);
+    }
+
+    private RecipeServiceGrpc.RecipeServiceBlockingStub start(RecipeReadModel readModel) throws IOException {
+        RecipeGrpcService service = new RecipeGrpcService(repository, mock(RecipeCommandPublisher.class),
+                mock(IngredientIndex.class), mock(RecipeEventPublisher.class));
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new RecipeGrpcServiceBinding(service, readModel))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        return RecipeServiceGrpc.newBlockingStub(channel);
+    }
+
+    private static RecipeReadModel readModel(boolean enabled) {
+        return new RecipeReadModel(mock(JdbcTemplate.class), new SimpleMeterRegistry(), enabled, Duration.ofMinutes(15));
+    }
+
+    private static RecipeProto.RecipeRequest request(UUID id) {
+        return RecipeProto.RecipeRequest.newBuilder().setId(id.toString()).build();
+    }
+
+    private static RecipeProto.Recipe recipe(UUID id, String name) {
+        return RecipeProto.Recipe.newBuilder()
+                .setId(id.toString())
+                .setName(name)
+                .setIngredients("flour")
+                .setCookingTime(10)
+                .build();
+    }
+}
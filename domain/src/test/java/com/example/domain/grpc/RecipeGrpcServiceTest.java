@@ -0,0 +1,249 @@
+package com.example.domain.grpc;
+
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeRepository;
+import com.example.domain.service.IngredientIndex;
+import com.example.domain.service.RecipeCommandPublisher;
+import com.example.domain.service.RecipeEventPublisher;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipeGrpcServiceTest {
+
+    private final RecipeRepository repository = mock(RecipeRepository.class);
+    private final RecipeEventPublisher eventPublisher = mock(RecipeEventPublisher.class);
+    private final RecipeGrpcService service = new RecipeGrpcService(repository, mock(RecipeCommandPublisher.class),
+            mock(IngredientIndex.class), eventPublisher);
+
+    @Test
+    void pagesFollowTheirCursorsThroughTheTable() {
+        List<Recipe> table = table(5);
+
+        List<RecipeProto.RecipePageResponse> pages = new ArrayList<>();
+        String cursor = "";
+        do {
+            pages.add(page(cursor, 2));
+            cursor = pages.get(pages.size() - 1).getNextCursor();
+        } while (!cursor.isEmpty());
+
+        assertThat(pages).extracting(RecipeProto.RecipePageResponse::getRecipesCount).containsExactly(2, 2, 1);
+        assertThat(pages.get(0).getNextCursor()).isEqualTo(table.get(1).getId().toString());
+        assertThat(pages.get(1).getNextCursor()).isEqualTo(table.get(3).getId().toString());
+        assertThat(pages.stream().flatMap(page -> page.getRecipesList().stream()).map(RecipeProto.Recipe::getId))
+                .containsExactlyElementsOf(table.stream().map(recipe -> recipe.getId().toString()).toList());
+        // One extra row per page tells whether another follows
+        verify(repository).findAllByOrderByIdAsc(Limit.of(3));
+        verify(repository).findByIdGreaterThanOrderByIdAsc(table.get(1).getId(), Limit.of(3));
+        verify(repository).findByIdGreaterThanOrderByIdAsc(table.get(3).getId(), Limit.of(3));
+    }
+
+    @Test
+    void aPageEndingExactlyAtTheLastRecipeHasNoCursor() {
+        List<Recipe> table = table(4);
+
+        RecipeProto.RecipePageResponse first = page("", 2);
+        RecipeProto.RecipePageResponse last = page(first.getNextCursor(), 2);
+
+        assertThat(first.getNextCursor()).isEqualTo(table.get(1).getId().toString());
+        assertThat(last.getRecipesCount()).isEqualTo(2);
+        assertThat(last.getNextCursor()).isEmpty();
+        // A cursor past the last recipe is an empty page, not an error
+        assertThat(page(table.get(3).getId().toString(), 2).getRecipesCount()).isZero();
+    }
+
+    @Test
+    void pageSizesFallBackToTheDefaultAndAreCapped() {
+        table(0);
+
+        page("", 0);
+        page("", 5000);
+
+        verify(repository).findAllByOrderByIdAsc(Limit.of(101));
+        verify(repository).findAllByOrderByIdAsc(Limit.of(1001));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void malformedCursorsAreRejected() {
+        StreamObserver<RecipeProto.RecipePageResponse> responses = mock(StreamObserver.class);
+
+        service.listRecipesPage(RecipeProto.RecipePageRequest.newBuilder().setAfter("not-a-uuid").build(), responses);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responses).onError(error.capture());
+        assertThat(((StatusRuntimeException) error.getValue()).getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        verify(repository, never()).findAllByOrderByIdAsc(any());
+    }
+
+    @Test
+    void theStreamPausesWhileTheClientIsNotReadyAndResumesOnReady() {
+        List<Recipe> table = table(5);
+        StreamCall call = new StreamCall();
+        // The client's buffer fills up after three recipes
+        call.readyFor = 3;
+
+        service.streamRecipes(RecipeProto.RecipePageRequest.newBuilder().setLimit(2).build(), call.observer);
+        assertThat(call.sent).isEmpty();
+
+        call.onReady.run();
+        assertThat(call.sent).hasSize(3);
+        verify(call.observer, never()).onCompleted();
+        // Only the page being sent is read ahead
+        verify(repository).findAllByOrderByIdAsc(Limit.of(2));
+        verify(repository).findByIdGreaterThanOrderByIdAsc(table.get(1).getId(), Limit.of(2));
+        verify(repository, times(1)).findByIdGreaterThanOrderByIdAsc(any(), any());
+
+        // A spurious wake-up while still not ready sends nothing
+        call.onReady.run();
+        assertThat(call.sent).hasSize(3);
+
+        call.readyFor = Integer.MAX_VALUE;
+        call.onReady.run();
+        assertThat(call.sent).containsExactlyElementsOf(table.stream().map(recipe -> recipe.getId().toString()).toList());
+        verify(call.observer).onCompleted();
+
+        // Further onReady calls after completion are ignored
+        call.onReady.run();
+        verify(call.observer, times(1)).onCompleted();
+    }
+
+    @Test
+    void aCancelledStreamStopsWithoutCompleting() {
+        table(5);
+        StreamCall call = new StreamCall();
+        call.readyFor = 2;
+
+        service.streamRecipes(RecipeProto.RecipePageRequest.newBuilder().setLimit(2).build(), call.observer);
+        call.onReady.run();
+        when(call.observer.isCancelled()).thenReturn(true);
+        call.readyFor = Integer.MAX_VALUE;
+        call.onReady.run();
+
+        assertThat(call.sent).hasSize(2);
+        verify(call.observer, never()).onCompleted();
+        verify(call.observer, never()).onError(any());
+        verify(repository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importAnnouncesTheRecipesItInserted() {
+        UUID added = UUID.randomUUID();
+        UUID existing = UUID.randomUUID();
+        when(repository.copyInsertAll(anyList())).thenReturn(List.of(new Recipe(added, "Pancakes", "flour", 10, 42L)));
+        StreamObserver<RecipeProto.ImportSummary> responses = mock(StreamObserver.class);
+
+        StreamObserver<RecipeProto.RecipeBatch> upload = service.importRecipes(responses);
+        upload.onNext(RecipeProto.RecipeBatch.newBuilder()
+                .addRecipes(recipe(added, "Pancakes"))
+                .addRecipes(recipe(existing, "Omelette"))
+                .build());
+        upload.onCompleted();
+
+        ArgumentCaptor<List<RecipeProto.RecipeEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher).publish(events.capture());
+        assertThat(events.getValue()).singleElement().satisfies(event -> {
+            assertThat(event.getType()).isEqualTo(RecipeProto.RecipeEvent.Type.UPSERTED);
+            assertThat(event.getId()).isEqualTo(added.toString());
+            assertThat(event.getVersion()).isEqualTo(42);
+            assertThat(event.getRecipe().getName()).isEqualTo("Pancakes");
+        });
+        verify(responses).onNext(RecipeProto.ImportSummary.newBuilder().setReceived(2).setInserted(1).build());
+        verify(responses).onCompleted();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importRejectsMalformedIdsWithoutWriting() {
+        StreamObserver<RecipeProto.ImportSummary> responses = mock(StreamObserver.class);
+
+        StreamObserver<RecipeProto.RecipeBatch> upload = service.importRecipes(responses);
+        upload.onNext(RecipeProto.RecipeBatch.newBuilder()
+                .addRecipes(RecipeProto.Recipe.newBuilder().setId("not-a-uuid").setName("Crepes"))
+                .build());
+        upload.onCompleted();
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responses).onError(error.capture());
+        assertThat(((StatusRuntimeException) error.getValue()).getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        verify(repository, never()).copyInsertAll(anyList());
+        verify(eventPublisher, never()).publish(any());
+        verify(responses, never()).onCompleted();
+    }
+
+    /**
+     * Backs the keyset queries with {@code size} recipes in id order and returns them in that order.
+     */
+    private List<Recipe> table(int size) {
+        List<Recipe> table = IntStream.range(0, size)
+                .mapToObj(i -> new Recipe(UUID.randomUUID(), "Recipe " + i, "flour", 10, (long) i + 1))
+                .sorted((left, right) -> left.getId().compareTo(right.getId()))
+                .toList();
+        when(repository.findAllByOrderByIdAsc(any())).thenAnswer(invocation ->
+                table.stream().limit(invocation.<Limit>getArgument(0).max()).toList());
+        when(repository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenAnswer(invocation -> table.stream()
+                .filter(recipe -> recipe.getId().compareTo(invocation.<UUID>getArgument(0)) > 0)
+                .limit(invocation.<Limit>getArgument(1).max())
+                .toList());
+        return table;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RecipeProto.RecipePageResponse page(String after, int limit) {
+        StreamObserver<RecipeProto.RecipePageResponse> responses = mock(StreamObserver.class);
+        service.listRecipesPage(RecipeProto.RecipePageRequest.newBuilder().setAfter(after).setLimit(limit).build(),
+                responses);
+        ArgumentCaptor<RecipeProto.RecipePageResponse> page = ArgumentCaptor.forClass(RecipeProto.RecipePageResponse.class);
+        verify(responses).onNext(page.capture());
+        verify(responses).onCompleted();
+        return page.getValue();
+    }
+
+    /**
+     * A server call that is ready for {@code readyFor} more messages; the ids sent are collected.
+     */
+    private static final class StreamCall {
+
+        @SuppressWarnings("unchecked")
+        private final ServerCallStreamObserver<RecipeProto.Recipe> observer = mock(ServerCallStreamObserver.class);
+        private final List<String> sent = new ArrayList<>();
+        private int readyFor;
+        private Runnable onReady;
+
+        private StreamCall() {
+            when(observer.isReady()).thenAnswer(invocation -> readyFor > sent.size());
+            doAnswer(invocation -> sent.add(invocation.<RecipeProto.Recipe>getArgument(0).getId()))
+                    .when(observer).onNext(any());
+            doAnswer(invocation -> onReady = invocation.getArgument(0)).when(observer).setOnReadyHandler(any());
+        }
+    }
+
+    private static RecipeProto.Recipe recipe(UUID id, String name) {
+        return RecipeProto.Recipe.newBuilder()
+                .setId(id.toString())
+                .setName(name)
+                .setIngredients("flour")
+                .setCookingTime(10)
+                .build();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.domain.recipe;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Runs the set-based statements against an embedded Postgres migrated with the application's Flyway scripts.
+ */
+class RecipeBatchRepositoryImplTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    private final RecipeBatchRepositoryImpl repository = new RecipeBatchRepositoryImpl(jdbcTemplate);
+    // The staging table is emptied on commit, so COPY and the insert from it need one transaction
+    private final TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    @BeforeAll
+    static void start() throws IOException {
+        assumeFalse("root".equals(System.getProperty("user.name")), "Postgres refuses to run as root");
+        postgres = EmbeddedPostgres.start();
+        dataSource = postgres.getPostgresDatabase();
+        Flyway.configure().dataSource(dataSource).load().migrate();
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.execute("TRUNCATE recipes CASCADE");
+    }
+
+    @Test
+    void insertAllSkipsExistingRecipesAndReturnsTheWrittenVersions() {
+        UUID pancakes = UUID.randomUUID();
+        UUID omelette = UUID.randomUUID();
+        List<RecipeVersion> first = repository.insertAll(List.of(recipe(pancakes, "Pancakes", "flour, milk")));
+
+        List<RecipeVersion> second = repository.insertAll(List.of(
+                recipe(pancakes, "Other pancakes", "flour"), recipe(omelette, "Omelette", "eggs")));
+
+        assertThat(first).extracting(RecipeVersion::id).containsExactly(pancakes);
+        assertThat(second).extracting(RecipeVersion::id).containsExactly(omelette);
+        assertThat(second.get(0).version()).isGreaterThan(first.get(0).version());
+        assertThat(stored()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                pancakes, "Pancakes|flour, milk|10|" + first.get(0).version(),
+                omelette, "Omelette|eggs|10|" + second.get(0).version()));
+    }
+
+    @Test
+    void updateAllChangesExistingRecipesUnderANewVersion() {
+        UUID pancakes = UUID.randomUUID();
+        long inserted = repository.insertAll(List.of(recipe(pancakes, "Pancakes", "flour"))).get(0).version();
+
+        List<RecipeVersion> updated = repository.updateAll(List.of(
+                recipe(pancakes, "Crepes", "flour, sugar"), recipe(UUID.randomUUID(), "Missing", "salt")));
+
+        assertThat(updated).singleElement().satisfies(version -> {
+            assertThat(version.id()).isEqualTo(pancakes);
+            assertThat(version.version()).isGreaterThan(inserted);
+        });
+        assertThat(stored()).containsEntry(pancakes, "Crepes|flour, sugar|10|" + updated.get(0).version());
+        assertThat(ingredientsOf(pancakes)).containsExactlyInAnyOrder("flour", "sugar");
+    }
+
+    @Test
+    void deleteAllByIdsReturnsADeletionVersionAboveTheLastWrite() {
+        UUID pancakes = UUID.randomUUID();
+        UUID omelette = UUID.randomUUID();
+        List<RecipeVersion> inserted = repository.insertAll(List.of(
+                recipe(pancakes, "Pancakes", "flour"), recipe(omelette, "Omelette", "eggs")));
+        long lastWrite = inserted.stream().mapToLong(RecipeVersion::version).max().orElseThrow();
+
+        List<RecipeVersion> deleted = repository.deleteAllByIds(List.of(pancakes, UUID.randomUUID()));
+
+        assertThat(deleted).singleElement().satisfies(version -> {
+            assertThat(version.id()).isEqualTo(pancakes);
+            assertThat(version.version()).isGreaterThan(lastWrite);
+        });
+        assertThat(stored()).containsOnlyKeys(omelette);
+        assertThat(ingredientsOf(pancakes)).isEmpty();
+    }
+
+    @Test
+    void copyInsertAllKeepsTextAsIsAndReturnsTheInsertedRows() {
+        UUID existing = UUID.randomUUID();
+        repository.insertAll(List.of(recipe(existing, "Pancakes", "flour")));
+        UUID quoted = UUID.randomUUID();
+        UUID empty = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+
+        List<Recipe> inserted = copy(List.of(
+                recipe(existing, "Other pancakes", "milk"),
+                recipe(quoted, "Mom's \"best\", really", "flour, milk\nand eggs"),
+                recipe(empty, "", ""),
+                recipe(missing, null, null)));
+
+        assertThat(inserted).extracting(Recipe::getId).containsExactlyInAnyOrder(quoted, empty, missing);
+        assertThat(inserted).allSatisfy(recipe -> assertThat(recipe.getVersion()).isPositive());
+        Map<UUID, String> stored = stored();
+        assertThat(stored.get(existing)).startsWith("Pancakes|flour|");
+        assertThat(stored.get(quoted)).startsWith("Mom's \"best\", really|flour, milk\nand eggs|10|");
+        assertThat(stored.get(empty)).startsWith("||10|");
+        assertThat(stored.get(missing)).startsWith("null|null|10|");
+        assertThat(inserted).filteredOn(recipe -> recipe.getId().equals(quoted)).singleElement()
+                .satisfies(recipe -> assertThat(stored.get(quoted)).endsWith("|" + recipe.getVersion()));
+        assertThat(ingredientsOf(quoted)).containsExactlyInAnyOrder("flour", "milk\nand eggs");
+    }
+
+    @Test
+    void copyInsertAllInsertsOneRecipePerId() {
+        UUID pancakes = UUID.randomUUID();
+
+        List<Recipe> inserted = copy(List.of(recipe(pancakes, "Pancakes", "flour"), recipe(pancakes, "Pancakes", "flour")));
+
+        assertThat(inserted).singleElement().extracting(Recipe::getId).isEqualTo(pancakes);
+        assertThat(stored()).containsOnlyKeys(pancakes);
+    }
+
+    private List<Recipe> copy(List<Recipe> recipes) {
+        return transaction.execute(status -> repository.copyInsertAll(recipes));
+    }
+
+    private Map<UUID, String> stored() {
+        return jdbcTemplate.query("SELECT id, name, ingredients, cooking_time, version FROM recipes",
+                        (rs, rowNum) -> Map.entry(rs.getObject(1, UUID.class),
+                                rs.getString(2) + '|' + rs.getString(3) + '|' + rs.getInt(4) + '|' + rs.getLong(5)))
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private List<String> ingredientsOf(UUID recipeId) {
+        return jdbcTemplate.queryForList("SELECT i.name FROM recipe_ingredient ri " +
+                "JOIN ingredients i ON i.id = ri.ingredient_id WHERE ri.recipe_id = ?", String.class, recipeId);
+    }
+
+    static Recipe recipe(UUID id, String name, String ingredients) {
+        return new Recipe(id, name, ingredients, 10);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.domain.recipe;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static com.example.domain.recipe.RecipeBatchRepositoryImplTest.recipe;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs every search filter against an embedded Postgres migrated with the application's Flyway scripts, and
+ * checks with EXPLAIN that each one is answered from the index created for it.
+ */
+class RecipeSearchRepositoryImplTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate = spy(new JdbcTemplate(dataSource));
+    private final RecipeSearchRepositoryImpl repository = new RecipeSearchRepositoryImpl(jdbcTemplate);
+    private final RecipeBatchRepositoryImpl batchRepository = new RecipeBatchRepositoryImpl(new JdbcTemplate(dataSource));
+    private final TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    @BeforeAll
+    static void start() throws IOException {
+        assumeFalse("root".equals(System.getProperty("user.name")), "Postgres refuses to run as root");
+        postgres = EmbeddedPostgres.start();
+        dataSource = postgres.getPostgresDatabase();
+        Flyway.configure().dataSource(dataSource).load().migrate();
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.execute("TRUNCATE recipes CASCADE");
+    }
+
+    @Test
+    void namePrefixIsCaseInsensitiveAndMatchesWildcardsLiterally() {
+        insert("Pancakes", "flour");
+        insert("pan_fried fish", "fish");
+        insert("Panzanella", "bread");
+        insert("100% rye", "rye");
+        insert("1000 layer cake", "flour");
+        insert("back\\slash", "salt");
+
+        assertThat(names(search(new RecipeSearchCriteria("PAN", null, null, null, null))))
+                .containsExactlyInAnyOrder("Pancakes", "pan_fried fish", "Panzanella");
+        assertThat(names(search(new RecipeSearchCriteria("pan_", null, null, null, null))))
+                .containsExactly("pan_fried fish");
+        assertThat(names(search(new RecipeSearchCriteria("100%", null, null, null, null))))
+                .containsExactly("100% rye");
+        assertThat(names(search(new RecipeSearchCriteria("back\\", null, null, null, null))))
+                .containsExactly("back\\slash");
+    }
+
+    @Test
+    void textMatchesAllWordsAcrossNameAndIngredients() {
+        insert("Pancakes", "flour, milk, eggs");
+        insert("Omelette", "eggs, butter");
+        insert("Egg-free bread", "flour, water");
+
+        assertThat(names(search(new RecipeSearchCriteria(null, "eggs flour", null, null, null))))
+                .containsExactly("Pancakes");
+        assertThat(names(search(new RecipeSearchCriteria(null, "OMELETTE butter", null, null, null))))
+                .containsExactly("Omelette");
+        // Query syntax is taken as plain words rather than failing the search
+        assertThat(names(search(new RecipeSearchCriteria(null, "eggs & !(butter", null, null, null))))
+                .containsExactly("Omelette");
+    }
+
+    @Test
+    void ingredientsMustAllBePresentAsWholeItems() {
+        insert("Pancakes", "Flour, milk, eggs");
+        insert("Crepes", "flour, milk");
+        insert("Omelette", "egg, butter");
+
+        assertThat(names(search(new RecipeSearchCriteria(null, null, List.of(" flour", "EGGS"), null, null))))
+                .containsExactly("Pancakes");
+        assertThat(names(search(new RecipeSearchCriteria(null, null, List.of("milk", " "), null, null))))
+                .containsExactlyInAnyOrder("Pancakes", "Crepes");
+        assertThat(names(search(new RecipeSearchCriteria(null, null, List.of("egg"), null, null))))
+                .containsExactly("Omelette");
+    }
+
+    @Test
+    void pagesContinueAfterTheLastIdInIdOrder() {
+        List<UUID> ids = IntStream.range(0, 5)
+                .mapToObj(i -> insert("Recipe " + i, "flour"))
+                // Postgres orders uuids as unsigned bytes, like their text; UUID.compareTo compares signed longs
+                .sorted(Comparator.comparing(UUID::toString))
+                .toList();
+        RecipeSearchCriteria all = new RecipeSearchCriteria(null, null, List.of("flour"), null, null);
+
+        List<UUID> paged = new ArrayList<>();
+        UUID after = null;
+        List<Recipe> page;
+        do {
+            page = repository.search(all, after, 2);
+            page.forEach(recipe -> paged.add(recipe.getId()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == 2);
+
+        assertThat(paged).containsExactlyElementsOf(ids);
+        assertThat(repository.search(all, ids.get(4), 2)).isEmpty();
+    }
+
+    @Test
+    void eachFilterIsAnsweredFromItsIndex() {
+        insert("Pancakes", "flour, milk, eggs");
+
+        assertThat(plan(new RecipeSearchCriteria("pan", null, null, null, null), null))
+                .contains("recipes_name_trgm_idx");
+        assertThat(plan(new RecipeSearchCriteria(null, "eggs", null, null, null), null))
+                .contains("recipes_search_tsv_idx");
+        assertThat(plan(new RecipeSearchCriteria(null, null, List.of("eggs"), null, null), null))
+                .contains("recipes_ingredients_idx");
+        assertThat(plan(new RecipeSearchCriteria(null, null, null, 5, 20), null))
+                .contains("recipes_cooking_time_idx");
+        assertThat(plan(new RecipeSearchCriteria(null, null, null, null, null), UUID.randomUUID()))
+                .contains("recipes_pkey");
+    }
+
+    private List<Recipe> search(RecipeSearchCriteria criteria) {
+        return repository.search(criteria, null, 100);
+    }
+
+    /**
+     * EXPLAIN of the statement the repository ran for these criteria, with sequential scans disabled: a handful
+     * of rows would otherwise be scanned whatever the indexes, and a filter that does not match its index
+     * expression still cannot use it.
+     */
+    @SuppressWarnings("unchecked")
+    private String plan(RecipeSearchCriteria criteria, UUID after) {
+        clearInvocations(jdbcTemplate);
+        repository.search(criteria, after, 10);
+        ArgumentCaptor<PreparedStatementCreator> statement = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).query(statement.capture(), any(RowMapper.class));
+        String sql = ((SqlProvider) statement.getValue()).getSql();
+        PreparedStatementSetter parameters = (PreparedStatementSetter) statement.getValue();
+        return transaction.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            return String.join("\n", jdbcTemplate.query(connection -> {
+                PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql);
+                parameters.setValues(explain);
+                return explain;
+            }, (rs, rowNum) -> rs.getString(1)));
+        });
+    }
+
+    private UUID insert(String name, String ingredients) {
+        UUID id = UUID.randomUUID();
+        batchRepository.insertAll(List.of(recipe(id, name, ingredients)));
+        return id;
+    }
+
+    private static List<String> names(List<Recipe> recipes) {
+        return recipes.stream().map(Recipe::getName).toList();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.domain.recipe;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Migrates a database holding recipes from before V4, as an existing deployment would be, through the batched
+ * version backfill and the NOT NULL step.
+ */
+class RecipeVersionMigrationTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    @BeforeAll
+    static void start() throws IOException {
+        assumeFalse("root".equals(System.getProperty("user.name")), "Postgres refuses to run as root");
+        postgres = EmbeddedPostgres.start();
+        dataSource = postgres.getPostgresDatabase();
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Test
+    void existingRecipesAreNumberedInBatchesAndNewOnesTakeTheDefault() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).target("3").load().migrate();
+        // More than two backfill batches
+        jdbcTemplate.update("INSERT INTO recipes (id, name, ingredients, cooking_time) " +
+                "SELECT gen_random_uuid(), 'Recipe ' || n, 'flour', 10 FROM generate_series(1, 25000) AS n");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(DISTINCT version) FROM recipes WHERE version IS NOT NULL",
+                Long.class)).isEqualTo(25000);
+        assertThat(jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE table_name = 'recipes' AND column_name = 'version'", String.class)).isEqualTo("NO");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM pg_constraint " +
+                "WHERE conname = 'recipes_version_not_null'", Long.class)).isZero();
+        long backfilled = jdbcTemplate.queryForObject("SELECT max(version) FROM recipes", Long.class);
+        long inserted = new RecipeBatchRepositoryImpl(jdbcTemplate)
+                .insertAll(List.of(new Recipe(UUID.randomUUID(), "Pancakes", "flour", 10)))
+                .get(0).version();
+        assertThat(inserted).isGreaterThan(backfilled);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.domain.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IngredientIndexTest {
+
+    private static final UUID PANCAKES = UUID.randomUUID();
+    private static final UUID OMELETTE = UUID.randomUUID();
+    private static final UUID CREPES = UUID.randomUUID();
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final IngredientIndex index = new IngredientIndex(jdbcTemplate, Duration.ofMinutes(15));
+
+    @Test
+    void answersAllAnyAndNoneQueries() {
+        index.put(PANCAKES, "flour, milk, eggs", 1);
+        index.put(OMELETTE, "eggs, cheese", 2);
+        index.put(CREPES, "flour, milk, sugar", 3);
+
+        assertThat(ids(List.of("eggs"), List.of(), List.of())).containsExactlyInAnyOrder(PANCAKES, OMELETTE);
+        assertThat(ids(List.of("flour", "milk"), List.of(), List.of("sugar"))).containsExactly(PANCAKES);
+        assertThat(ids(List.of(), List.of("cheese", "sugar"), List.of())).containsExactlyInAnyOrder(OMELETTE, CREPES);
+        assertThat(ids(List.of("flour"), List.of("eggs", "cheese"), List.of())).containsExactly(PANCAKES);
+        assertThat(ids(List.of(), List.of(), List.of("eggs"))).containsExactly(CREPES);
+        assertThat(ids(List.of("eggs", "truffle"), List.of(), List.of())).isEmpty();
+    }
+
+    @Test
+    void normalizesIngredientsLikeTheDatabase() {
+        index.put(PANCAKES, " Flour ,MILK,, eggs ", 1);
+
+        assertThat(ids(List.of("flour", " Milk"), List.of(), List.of())).containsExactly(PANCAKES);
+    }
+
+    @Test
+    void limitsIdsButCountsEveryMatch() {
+        index.put(PANCAKES, "flour", 1);
+        index.put(OMELETTE, "flour", 2);
+        index.put(CREPES, "flour", 3);
+
+        IngredientIndex.Result result = index.query(List.of("flour"), List.of(), List.of(), 2);
+
+        assertThat(result.recipeIds()).hasSize(2);
+        assertThat(result.total()).isEqualTo(3);
+    }
+
+    @Test
+    void updatesReplaceTheIngredientsOfARecipe() {
+        index.put(PANCAKES, "flour, milk", 1);
+        index.put(PANCAKES, "flour, water", 2);
+
+        assertThat(ids(List.of("milk"), List.of(), List.of())).isEmpty();
+        assertThat(ids(List.of("water"), List.of(), List.of())).containsExactly(PANCAKES);
+    }
+
+    @Test
+    void aDeletedRecipeCanBeInsertedAgain() {
+        index.put(PANCAKES, "flour, milk", 1);
+        index.put(OMELETTE, "eggs", 2);
+        index.remove(PANCAKES, 3);
+
+        assertThat(ids(List.of("flour"), List.of(), List.of())).isEmpty();
+        assertThat(ids(List.of(), List.of(), List.of())).containsExactly(OMELETTE);
+
+        index.put(PANCAKES, "flour, eggs", 4);
+
+        assertThat(ids(List.of("eggs"), List.of(), List.of())).containsExactlyInAnyOrder(PANCAKES, OMELETTE);
+        assertThat(ids(List.of("milk"), List.of(), List.of())).isEmpty();
+        assertThat(index.query(List.of(), List.of(), List.of(), 10).total()).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresChangesOlderThanTheLastWrite() {
+        index.put(PANCAKES, "flour, milk", 5);
+        index.put(PANCAKES, "flour, water", 4);
+        assertThat(ids(List.of("milk"), List.of(), List.of())).containsExactly(PANCAKES);
+
+        index.remove(PANCAKES, 6);
+        // A late event of a write before the delete
+        index.put(PANCAKES, "flour, milk", 5);
+        assertThat(ids(List.of("flour"), List.of(), List.of())).isEmpty();
+    }
+
+    @Test
+    void rebuildLoadsTheDatabaseState() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            row(handler, rs, PANCAKES, 1, "flour");
+            row(handler, rs, PANCAKES, 1, "milk");
+            row(handler, rs, OMELETTE, 2, null);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        index.put(CREPES, "sugar", 3);
+
+        index.rebuild();
+
+        assertThat(ids(List.of("flour", "milk"), List.of(), List.of())).containsExactly(PANCAKES);
+        assertThat(ids(List.of(), List.of(), List.of())).containsExactlyInAnyOrder(PANCAKES, OMELETTE);
+    }
+
+    @Test
+    void rebuildKeepsRecentDeletesSoLateUpsertsStayIgnored() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        // Read before the delete reached the database
+        loading(handler -> row(handler, rs, PANCAKES, 1, "flour"));
+        index.put(PANCAKES, "flour", 1);
+        index.remove(PANCAKES, 2);
+
+        index.rebuild();
+        assertThat(ids(List.of("flour"), List.of(), List.of())).isEmpty();
+        index.put(PANCAKES, "flour", 1);
+        assertThat(ids(List.of("flour"), List.of(), List.of())).isEmpty();
+
+        // Still known after another rebuild that no longer sees the recipe at all
+        loading(handler -> {
+        });
+        index.rebuild();
+        index.put(PANCAKES, "flour", 1);
+        assertThat(ids(List.of("flour"), List.of(), List.of())).isEmpty();
+        index.put(PANCAKES, "flour, sugar", 3);
+        assertThat(ids(List.of("sugar"), List.of(), List.of())).containsExactly(PANCAKES);
+    }
+
+    @Test
+    void rebuildDropsDeletesOlderThanTheGracePeriod() throws Exception {
+        IngredientIndex noGrace = new IngredientIndex(jdbcTemplate, Duration.ZERO);
+        loading(handler -> {
+        });
+        noGrace.remove(PANCAKES, 2);
+
+        noGrace.rebuild();
+        noGrace.put(PANCAKES, "flour", 1);
+
+        assertThat(noGrace.query(List.of("flour"), List.of(), List.of(), 10).recipeIds()).containsExactly(PANCAKES);
+    }
+
+    // Makes the next rebuilds read the rows handed to the handler
+    private void loading(Rows rows) {
+        doAnswer(invocation -> {
+            rows.load(invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private interface Rows {
+        void load(RowCallbackHandler handler) throws Exception;
+    }
+
+    private Set<UUID> ids(List<String> all, List<String> any, List<String> none) {
+        return Set.copyOf(index.query(all, any, none, 100).recipeIds());
+    }
+
+    private static void row(RowCallbackHandler handler, ResultSet rs, UUID id, long version, String ingredient)
+            throws Exception {
+        when(rs.getObject(eq(1), eq(UUID.class))).thenReturn(id);
+        when(rs.getLong(2)).thenReturn(version);
+        when(rs.getString(3)).thenReturn(ingredient);
+        handler.processRow(rs);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeRepository;
+import com.example.domain.recipe.RecipeVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerContainerFactory;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.recipeCommandContentType;
+import static com.example.domain.config.RabbitMQConfig.recipeDeadLetterExchangeName;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipeBatchExchangeListenerTest {
+
+    private final RecipeCommandCodec codec = new RecipeCommandCodec(new ObjectMapper());
+    private final RecipeRepository repository = mock(RecipeRepository.class);
+    private final RecipeEventPublisher eventPublisher = mock(RecipeEventPublisher.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private RecipeBatchExchangeListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new RecipeBatchExchangeListener(repository, codec, eventPublisher,
+                new RecipeCommandMetrics(new SimpleMeterRegistry()),
+                rabbitTemplate, mock(RabbitListenerContainerFactory.class), 1);
+        when(repository.insertAll(anyList())).thenAnswer(invocation -> versions(invocation.getArgument(0), 10));
+        when(repository.updateAll(anyList())).thenAnswer(invocation -> versions(invocation.getArgument(0), 20));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void duplicateCreatesKeepTheFirstAndDuplicateUpdatesTheLast() {
+        UUID id = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        listener.onCommandBatch(List.of(
+                create(id, "first"),
+                create(other, "other"),
+                create(id, "second"),
+                update(id, "update 1"),
+                update(id, "update 2")));
+
+        ArgumentCaptor<List<Recipe>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(repository).insertAll(inserted.capture());
+        assertThat(inserted.getValue()).extracting(Recipe::getId, Recipe::getName)
+                .containsExactly(tuple(id, "first"),
+                        tuple(other, "other"));
+
+        ArgumentCaptor<List<Recipe>> updated = ArgumentCaptor.forClass(List.class);
+        verify(repository).updateAll(updated.capture());
+        assertThat(updated.getValue()).extracting(Recipe::getName).containsExactly("update 2");
+    }
+
+    @Test
+    void announcesTheCommandThatWasWritten() {
+        UUID id = UUID.randomUUID();
+        Message first = create(id, "first");
+        listener.onCommandBatch(List.of(first, create(id, "second")));
+
+        List<RecipeProto.RecipeEvent> events = publishedEvents();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getRecipe().getName()).isEqualTo("first");
+        assertThat(events.get(0).getVersion()).isEqualTo(10);
+        assertThat(events.get(0).getCommandId()).isEqualTo(commandIdOf(first));
+    }
+
+    @Test
+    void undecodableMessagesAreDeadLetteredAndTheRestApplied() {
+        UUID id = UUID.randomUUID();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(recipeCommandContentType);
+        Message garbage = new Message(new byte[]{(byte) 0xff, 0x7f}, properties);
+
+        listener.onCommandBatch(List.of(garbage, create(id, "first")));
+
+        verify(rabbitTemplate).send(eq(recipeDeadLetterExchangeName), anyString(), eq(garbage));
+        verify(repository).insertAll(anyList());
+    }
+
+    @Test
+    void aFailingRunFailsTheBatch() {
+        when(repository.updateAll(anyList())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThatThrownBy(() -> listener.onCommandBatch(List.of(create(UUID.randomUUID(), "created"),
+                update(UUID.randomUUID(), "updated"))))
+                .isInstanceOf(QueryTimeoutException.class);
+        // The create run before the failing one was announced, the failed run was not
+        assertThat(publishedEvents()).extracting(RecipeProto.RecipeEvent::getVersion).containsExactly(10L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RecipeProto.RecipeEvent> publishedEvents() {
+        ArgumentCaptor<List<RecipeProto.RecipeEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher).publish(events.capture());
+        return events.getValue();
+    }
+
+    private Message create(UUID id, String name) {
+        return codec.encode(RecipeProto.RecipeCommand.Op.CREATE, new Recipe(id, name, "salt", 10));
+    }
+
+    private Message update(UUID id, String name) {
+        return codec.encode(RecipeProto.RecipeCommand.Op.UPDATE, new Recipe(id, name, "salt", 10));
+    }
+
+    private String commandIdOf(Message message) {
+        try {
+            return codec.decode(message).commandId();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<RecipeVersion> versions(List<Recipe> recipes, long version) {
+        return recipes.stream().map(recipe -> new RecipeVersion(recipe.getId(), version)).toList();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.recipeCommandContentType;
+import static com.example.domain.config.RabbitMQConfig.recipeCommandVersion;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecipeCommandCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RecipeCommandCodec codec = new RecipeCommandCodec(objectMapper);
+
+    @Test
+    void roundTripsAnUpsertCommand() throws Exception {
+        Recipe recipe = new Recipe(UUID.randomUUID(), "Pancakes", "flour, milk", 20);
+
+        Message message = codec.encode(RecipeProto.RecipeCommand.Op.UPDATE, recipe);
+        RecipeCommandCodec.Command command = codec.decode(message);
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(recipeCommandContentType);
+        assertThat(command.op()).isEqualTo(RecipeProto.RecipeCommand.Op.UPDATE);
+        assertThat(command.id()).isEqualTo(recipe.getId());
+        assertThat(command.recipe()).isEqualTo(recipe);
+        assertThat(command.timestamp()).isPositive();
+        assertThat(command.commandId()).isNotEmpty();
+    }
+
+    @Test
+    void roundTripsADeleteCommand() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        RecipeCommandCodec.Command command = codec.decode(codec.encodeDelete(id));
+
+        assertThat(command.op()).isEqualTo(RecipeProto.RecipeCommand.Op.DELETE);
+        assertThat(command.id()).isEqualTo(id);
+        assertThat(command.recipe()).isNull();
+    }
+
+    @Test
+    void rejectsEnvelopesOfAnotherVersion() {
+        for (int version : new int[]{0, recipeCommandVersion + 1}) {
+            Message message = envelope(RecipeProto.RecipeCommand.newBuilder()
+                    .setVersion(version)
+                    .setOp(RecipeProto.RecipeCommand.Op.DELETE)
+                    .setId(UUID.randomUUID().toString())
+                    .build());
+
+            assertThatThrownBy(() -> codec.decode(message))
+                    .isInstanceOf(AmqpRejectAndDontRequeueException.class)
+                    .hasMessageContaining("version " + version);
+        }
+    }
+
+    @Test
+    void decodesLegacyMessages() throws Exception {
+        UUID id = UUID.randomUUID();
+        Recipe recipe = new Recipe(id, "Omelette", "eggs", 5);
+        byte[] json = objectMapper.writeValueAsBytes(recipe);
+        byte[] quotedId = ('"' + id.toString() + '"').getBytes(StandardCharsets.UTF_8);
+        byte[] base64Json = objectMapper.writeValueAsBytes(Base64.getEncoder().encodeToString(json));
+
+        assertThat(codec.decode(legacy(id.toString().getBytes(StandardCharsets.UTF_8))).id()).isEqualTo(id);
+        assertThat(codec.decode(legacy(quotedId)).id()).isEqualTo(id);
+        RecipeCommandCodec.Command fromJson = codec.decode(legacy(json));
+        assertThat(fromJson.op()).isEqualTo(RecipeProto.RecipeCommand.Op.OP_UNSPECIFIED);
+        assertThat(fromJson.recipe().getName()).isEqualTo("Omelette");
+        assertThat(codec.decode(legacy(base64Json)).recipe().getId()).isEqualTo(id);
+    }
+
+    private static Message envelope(RecipeProto.RecipeCommand command) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(recipeCommandContentType);
+        return new Message(command.toByteArray(), properties);
+    }
+
+    private static Message legacy(byte[] body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        return new Message(body, properties);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.recipeEventExchangeName;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class RecipeEventPublisherTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecipeEventPublisher publisher = new RecipeEventPublisher(rabbitTemplate, meterRegistry,
+            Duration.ofMillis(200), 3);
+
+    // Broker behaviour per send, in order: ack, nack, no confirm at all, or a failing send
+    private final Deque<String> outcomes = new ArrayDeque<>();
+    private final List<RecipeProto.RecipeEvent> sent = new ArrayList<>();
+
+    {
+        doAnswer(invocation -> {
+            sent.add(RecipeProto.RecipeEvent.parseFrom(invocation.<Message>getArgument(2).getBody()));
+            CorrelationData correlation = invocation.getArgument(3);
+            switch (outcomes.isEmpty() ? "ack" : outcomes.poll()) {
+                case "ack" -> correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+                case "nack" -> correlation.getFuture().complete(new CorrelationData.Confirm(false, "overloaded"));
+                case "error" -> throw new AmqpConnectException(new ConnectException("down"));
+                default -> {
+                }
+            }
+            return null;
+        }).when(rabbitTemplate).send(eq(recipeEventExchangeName), eq(""), any(Message.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void publishesConfirmedEventsOnce() {
+        UUID id = UUID.randomUUID();
+        publisher.upserted(new Recipe(id, "Pancakes", "flour", 20), 5, "command");
+
+        assertThat(sent).hasSize(1);
+        RecipeProto.RecipeEvent event = sent.get(0);
+        assertThat(event.getType()).isEqualTo(RecipeProto.RecipeEvent.Type.UPSERTED);
+        assertThat(event.getId()).isEqualTo(id.toString());
+        assertThat(event.getVersion()).isEqualTo(5);
+        assertThat(event.getRecipe().getName()).isEqualTo("Pancakes");
+        assertThat(event.getCommandId()).isEqualTo("command");
+        assertThat(count("ack")).isEqualTo(1);
+    }
+
+    @Test
+    void resendsEventsThatWereNackedUnconfirmedOrFailedToSend() {
+        RecipeProto.RecipeEvent first = RecipeEventPublisher.deletedEvent(new RecipeVersion(UUID.randomUUID(), 1), "a");
+        RecipeProto.RecipeEvent second = RecipeEventPublisher.deletedEvent(new RecipeVersion(UUID.randomUUID(), 2), "b");
+        RecipeProto.RecipeEvent third = RecipeEventPublisher.deletedEvent(new RecipeVersion(UUID.randomUUID(), 3), "c");
+        RecipeProto.RecipeEvent fourth = RecipeEventPublisher.deletedEvent(new RecipeVersion(UUID.randomUUID(), 4), "d");
+        outcomes.addAll(List.of("ack", "nack", "silent", "error"));
+
+        publisher.publish(List.of(first, second, third, fourth));
+
+        assertThat(sent).containsExactly(first, second, third, fourth, second, third, fourth);
+        assertThat(count("ack")).isEqualTo(4);
+        assertThat(count("resent")).isEqualTo(3);
+        assertThat(count("dropped")).isZero();
+    }
+
+    @Test
+    void givesUpAfterMaxAttemptsWithoutFailingTheCaller() {
+        outcomes.addAll(List.of("nack", "nack", "nack"));
+
+        publisher.deleted(new RecipeVersion(UUID.randomUUID(), 9), "command");
+
+        assertThat(sent).hasSize(3);
+        assertThat(count("dropped")).isEqualTo(1);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("recipe.events.publish").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RecipeEventSubscriberTest {
+
+    private final IngredientIndex ingredientIndex = new IngredientIndex(mock(JdbcTemplate.class), Duration.ofMinutes(15));
+    private final RecipeReadModel readModel = mock(RecipeReadModel.class);
+    private final RecipeEventSubscriber subscriber = new RecipeEventSubscriber(ingredientIndex, readModel);
+
+    @Test
+    void appliesEventsOfAnyInstanceToTheIngredientIndex() {
+        UUID id = UUID.randomUUID();
+
+        subscriber.onEvent(upserted(id, "flour, milk", 3));
+        assertThat(matches("milk")).containsExactly(id);
+
+        subscriber.onEvent(deleted(id, 5));
+        // Redelivered late, after the delete
+        subscriber.onEvent(upserted(id, "flour, milk", 3));
+        assertThat(matches("milk")).isEmpty();
+    }
+
+    @Test
+    void appliesEventsToTheReadModel() throws Exception {
+        UUID id = UUID.randomUUID();
+        Message upsert = upserted(id, "flour", 3);
+
+        subscriber.onEvent(upsert);
+        subscriber.onEvent(deleted(id, 5));
+
+        verify(readModel).put(RecipeProto.RecipeEvent.parseFrom(upsert.getBody()).getRecipe(), 3);
+        verify(readModel).remove(id, 5);
+    }
+
+    @Test
+    void unreadableEventsAreRejectedWithoutRequeue() {
+        Message garbage = new Message(new byte[]{(byte) 0xff, 0x01}, new MessageProperties());
+
+        assertThatThrownBy(() -> subscriber.onEvent(garbage)).isInstanceOf(AmqpRejectAndDontRequeueException.class);
+    }
+
+    private List<UUID> matches(String ingredient) {
+        return ingredientIndex.query(List.of(ingredient), List.of(), List.of(), 10).recipeIds();
+    }
+
+    static Message upserted(UUID id, String ingredients, long version) {
+        return event(RecipeProto.RecipeEvent.newBuilder()
+                .setType(RecipeProto.RecipeEvent.Type.UPSERTED)
+                .setId(id.toString())
+                .setVersion(version)
+                .setRecipe(RecipeProto.Recipe.newBuilder()
+                        .setId(id.toString())
+                        .setName("Recipe")
+                        .setIngredients(ingredients)
+                        .setCookingTime(10)
+                        .setVersion(version)));
+    }
+
+    static Message deleted(UUID id, long version) {
+        return event(RecipeProto.RecipeEvent.newBuilder()
+                .setType(RecipeProto.RecipeEvent.Type.DELETED)
+                .setId(id.toString())
+                .setVersion(version));
+    }
+
+    private static Message event(RecipeProto.RecipeEvent.Builder event) {
+        return new Message(event.build().toByteArray(), new MessageProperties());
+    }
+}
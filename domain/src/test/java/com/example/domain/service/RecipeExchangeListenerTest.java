@@ -0,0 +1,67 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.domain.recipe.Recipe;
+import com.example.domain.recipe.RecipeRepository;
+import com.example.domain.recipe.RecipeVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.domain.config.RabbitMQConfig.recipeCommandContentType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipeExchangeListenerTest {
+
+    private final RecipeCommandCodec codec = new RecipeCommandCodec(new ObjectMapper());
+    private final RecipeRepository repository = mock(RecipeRepository.class);
+    private final RecipeEventPublisher eventPublisher = mock(RecipeEventPublisher.class);
+    private final RecipeExchangeListener listener = new RecipeExchangeListener(repository, codec,
+            eventPublisher, new RecipeCommandMetrics(new SimpleMeterRegistry()), 1);
+
+    @Test
+    void appliesACommandAndAnnouncesIt() {
+        Recipe recipe = new Recipe(UUID.randomUUID(), "Pancakes", "flour", 20);
+        when(repository.insertAll(anyList())).thenReturn(List.of(new RecipeVersion(recipe.getId(), 7)));
+
+        listener.onCommand(codec.encode(RecipeProto.RecipeCommand.Op.CREATE, recipe));
+
+        verify(eventPublisher).upserted(eq(recipe), eq(7L), anyString());
+    }
+
+    @Test
+    void failuresAreRethrownSoTheMessageIsRetriedAndDeadLettered() {
+        when(repository.updateAll(anyList())).thenThrow(new QueryTimeoutException("timeout"));
+        Message message = codec.encode(RecipeProto.RecipeCommand.Op.UPDATE,
+                new Recipe(UUID.randomUUID(), "Pancakes", "flour", 20));
+
+        assertThatThrownBy(() -> listener.onCommand(message)).isInstanceOf(QueryTimeoutException.class);
+        assertThatThrownBy(() -> listener.onPutMethod(message)).isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    void undecodableMessagesAreRejectedWithoutRequeue() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(recipeCommandContentType);
+        Message garbage = new Message(new byte[]{(byte) 0xff, 0x7f}, properties);
+
+        assertThatThrownBy(() -> listener.onCommand(garbage)).isInstanceOf(AmqpRejectAndDontRequeueException.class);
+        verify(eventPublisher, never()).deleted(any(), any());
+        verify(repository, never()).deleteAllByIds(any());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.domain.service;
+
+import com.example.domain.grpc.RecipeProto;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RecipeReadModelTest {
+
+    // An empty recipes table: rebuild() only makes the model serve reads
+    private final RecipeReadModel model = new RecipeReadModel(mock(JdbcTemplate.class), new SimpleMeterRegistry(), true,
+            Duration.ofMinutes(15));
+
+    @Test
+    void servesNothingUntilLoaded() {
+        UUID id = UUID.randomUUID();
+        model.put(recipe(id, "flour"), 1);
+
+        assertThat(model.getRecipeResponse(id)).isNull();
+        assertThat(model.getListRecipesResponse()).isNull();
+    }
+
+    @Test
+    void deletesKeepTheirVersionSoOlderWritesCannotRestoreTheRecipe() throws Exception {
+        model.rebuild();
+        UUID id = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+
+        model.put(recipe(id, "flour"), 3);
+        model.remove(id, 5);
+        model.put(recipe(id, "flour, milk"), 4);
+        // A delete seen before the write it follows
+        model.remove(unknown, 8);
+        model.put(recipe(unknown, "eggs"), 7);
+
+        assertThat(model.getRecipeResponse(id)).isNull();
+        assertThat(model.getRecipeResponse(unknown)).isNull();
+        assertThat(listed()).isEmpty();
+
+        model.put(recipe(id, "flour, water"), 6);
+        assertThat(RecipeProto.RecipeResponse.parseFrom(model.getRecipeResponse(id)).getRecipe())
+                .isEqualTo(recipe(id, "flour, water").toBuilder().setVersion(6).build());
+        assertThat(listed()).containsOnlyKeys(id);
+    }
+
+    @Test
+    void rebuildsKeepRecentDeletesAndDropOlderOnes() {
+        RecipeReadModel noGrace = new RecipeReadModel(mock(JdbcTemplate.class), new SimpleMeterRegistry(), true,
+                Duration.ZERO);
+        UUID id = UUID.randomUUID();
+        for (RecipeReadModel readModel : List.of(model, noGrace)) {
+            readModel.rebuild();
+            readModel.put(recipe(id, "flour"), 3);
+            readModel.remove(id, 5);
+            readModel.rebuild();
+            // A late event of a write before the delete
+            readModel.put(recipe(id, "flour, milk"), 4);
+        }
+
+        assertThat(model.getRecipeResponse(id)).isNull();
+        assertThat(noGrace.getRecipeResponse(id)).isNotNull();
+    }
+
+    /**
+     * Random writes and deletes, with versions out of order, against a {@link HashMap} applying the same rule:
+     * a change is ignored if the recipe's last write, delete included, has a higher version. Enough ids to
+     * grow the table several times, and few enough that most changes hit an existing entry.
+     */
+    @Test
+    void matchesAHashMapUnderRandomChanges() throws Exception {
+        model.rebuild();
+        long seed = System.nanoTime();
+        Random random = new Random(seed);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        Map<UUID, Long> versions = new HashMap<>();
+        Map<UUID, RecipeProto.Recipe> expected = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            UUID id = ids.get(random.nextInt(ids.size()));
+            long version = random.nextInt(1000);
+            boolean delete = random.nextInt(3) == 0;
+            if (delete) {
+                model.remove(id, version);
+            } else {
+                model.put(recipe(id, "ingredient " + i), version);
+            }
+            Long known = versions.get(id);
+            if (known == null || known <= version) {
+                versions.put(id, version);
+                if (delete) {
+                    expected.remove(id);
+                } else {
+                    expected.put(id, recipe(id, "ingredient " + i).toBuilder().setVersion(version).build());
+                }
+            }
+            if (i % 1000 == 0) {
+                UUID probe = ids.get(random.nextInt(ids.size()));
+                assertThat(held(probe)).as("seed %d, step %d", seed, i).isEqualTo(expected.get(probe));
+            }
+        }
+
+        for (UUID id : ids) {
+            assertThat(held(id)).as("seed %d", seed).isEqualTo(expected.get(id));
+        }
+        assertThat(listed()).as("seed %d", seed).isEqualTo(expected);
+    }
+
+    private RecipeProto.Recipe held(UUID id) throws InvalidProtocolBufferException {
+        byte[] response = model.getRecipeResponse(id);
+        return response == null ? null : RecipeProto.RecipeResponse.parseFrom(response).getRecipe();
+    }
+
+    private Map<UUID, RecipeProto.Recipe> listed() throws InvalidProtocolBufferException {
+        Map<UUID, RecipeProto.Recipe> recipes = new HashMap<>();
+        for (RecipeProto.Recipe recipe : RecipeProto.RecipeListResponse.parseFrom(model.getListRecipesResponse()).getRecipesList()) {
+            assertThat(recipes.put(UUID.fromString(recipe.getId()), recipe)).isNull();
+        }
+        return recipes;
+    }
+
+    private static RecipeProto.Recipe recipe(UUID id, String ingredients) {
+        return RecipeProto.Recipe.newBuilder()
+                .setId(id.toString())
+                .setName("Recipe")
+                .setIngredients(ingredients)
+                .setCookingTime(15)
+                .build();
+    }
+}
@@ -1,15 +1,44 @@
 package com.example.gateway.api;
 
+import com.example.gateway.api.dto.RecipeImportResultDTO;
+import com.example.gateway.api.dto.RecipePageDTO;
 import com.example.gateway.api.dto.RecipeRequestDTO;
 import com.example.gateway.api.dto.RecipeResponseDTO;
+import com.example.gateway.api.dto.RecipeSearchDTO;
+import com.example.gateway.service.CommandBackpressureException;
+import com.example.gateway.service.CommandPublishException;
+import com.example.gateway.mapper.RecipeMapper;
 import com.example.gateway.service.RecipeService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import io.grpc.StatusRuntimeException;
 import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/v1/recipes")
@@ -17,65 +46,323 @@ import java.util.List;
 @Slf4j
 public class RecipeController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final MediaType APPLICATION_PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+    // Returned by writes; a read sending it back waits (briefly) until that write is visible
+    static final String CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token";
+
+    // Fields without a column (the recipe version) are left out of CSV exports
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(JsonGenerator.Feature.IGNORE_UNKNOWN)
+            .build();
+    private static final CsvSchema RECIPE_CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("name")
+            .addColumn("ingredients")
+            .addNumberColumn("cookingTime")
+            .setUseHeader(true)
+            .build();
+
     private final RecipeService recipeService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * The full list, as JSON or (when the client prefers {@code application/x-protobuf}) as a
+     * {@code RecipeListResponse}. The ETag is the list's version; revalidating against the cached list
+     * only reads its version, not the recipes.
+     */
     @Timed(value = "gateway.getAllRecipes", description = "Time taken to fetch all recipes")
     @GetMapping
-    public ResponseEntity<List<RecipeResponseDTO>> getAllRecipes() {
+    public CompletableFuture<ResponseEntity<?>> getAllRecipes(
+            @RequestHeader(name = CONSISTENCY_TOKEN_HEADER, required = false) String consistencyToken,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
         log.info("Received request to fetch all recipes");
-        List<RecipeResponseDTO> recipes = recipeService.getAllRecipes();
-        log.info("Returning {} recipes", recipes.size());
-        return ResponseEntity.ok(recipes);
+        boolean protobuf = prefersProtobuf(accept);
+        if (ifNoneMatch != null && (consistencyToken == null || consistencyToken.isBlank())) {
+            String version = recipeService.getCachedCatalogVersion();
+            if (version != null && matches(ifNoneMatch, eTag(version, protobuf))) {
+                log.info("Recipe list not modified");
+                return CompletableFuture.completedFuture(notModified(eTag(version, protobuf)));
+            }
+        }
+        return recipeService.getAllRecipes(consistencyToken).thenApply(catalog -> {
+            log.info("Returning {} recipes", catalog.getRecipes().size());
+            return versioned(catalog.getVersion(), protobuf, catalog.getRecipes(), RecipeMapper::toProto);
+        });
+    }
+
+    @Timed(value = "gateway.getRecipesPage", description = "Time taken to fetch one page of recipes")
+    @GetMapping(params = "limit")
+    public CompletableFuture<ResponseEntity<RecipePageDTO>> getRecipesPage(@RequestParam int limit,
+                                                                           @RequestParam(required = false) String after) {
+        log.info("Received request to fetch recipes page: limit={}, after='{}'", limit, after);
+        return recipeService.getRecipesPage(limit, after).thenApply(page -> {
+            log.info("Returning {} recipes, next cursor: {}", page.getRecipes().size(), page.getNextCursor());
+            return ResponseEntity.ok(page);
+        });
+    }
+
+    /**
+     * Multi-get by comma-separated or repeated {@code ids}, in the order given; unknown ids are left out.
+     */
+    @Timed(value = "gateway.getRecipesByIds", description = "Time taken to fetch recipes by IDs")
+    @GetMapping(params = "ids")
+    public CompletableFuture<ResponseEntity<List<RecipeResponseDTO>>> getRecipesByIds(
+            @RequestParam List<String> ids,
+            @RequestHeader(name = CONSISTENCY_TOKEN_HEADER, required = false) String consistencyToken) {
+        log.info("Received request to fetch {} recipes by ID", ids.size());
+        return recipeService.getRecipesByIds(ids, consistencyToken).thenApply(recipes -> {
+            log.info("Returning {} of {} requested recipes", recipes.size(), ids.size());
+            return ResponseEntity.ok(recipes);
+        });
+    }
+
+    /**
+     * Search by name prefix ({@code name}), full text ({@code q}), ingredients (repeated {@code ingredient},
+     * all must be present) and cooking time range, paginated like {@link #getRecipesPage}.
+     */
+    @Timed(value = "gateway.searchRecipes", description = "Time taken to search recipes")
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<RecipePageDTO>> searchRecipes(RecipeSearchDTO search) {
+        log.info("Received request to search recipes: {}", search);
+        return recipeService.searchRecipes(search).thenApply(page -> {
+            log.info("Returning {} recipes, next cursor: {}", page.getRecipes().size(), page.getNextCursor());
+            return ResponseEntity.ok(page);
+        });
+    }
+
+    @GetMapping(params = "stream=true", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecipes(@RequestParam(required = false) String after) {
+        log.info("Received request to stream recipes after '{}'", after);
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            try {
+                recipeService.streamRecipes(after, recipe -> writeLine(out, recipe));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().body(body);
+    }
+
+    /**
+     * Bulk import from an NDJSON or CSV (with header row) body. The body is parsed record by record
+     * while it is being sent to the domain service, so it is never held in memory as a whole.
+     */
+    @Timed(value = "gateway.importRecipes", description = "Time taken to import recipes in bulk")
+    @PostMapping(value = "/import", consumes = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<?> importRecipes(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                           InputStream body) {
+        log.info("Received request to import recipes as {}", contentType);
+        ObjectReader reader = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                ? CSV_MAPPER.readerFor(RecipeRequestDTO.class).with(CsvSchema.emptySchema().withHeader())
+                : objectMapper.readerFor(RecipeRequestDTO.class);
+        try (MappingIterator<RecipeRequestDTO> recipes = reader.readValues(body)) {
+            RecipeImportResultDTO result = recipeService.importRecipes(recipes);
+            log.info("Imported {} of {} recipes", result.getInserted(), result.getReceived());
+            return ResponseEntity.ok(result);
+        } catch (IOException | RuntimeJsonMappingException e) {
+            return rejectImport(e);
+        } catch (StatusRuntimeException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // MappingIterator wraps read errors other than mapping errors (malformed JSON or CSV, a broken
+            // upload) in a plain RuntimeException
+            if (e.getCause() instanceof IOException cause) {
+                return rejectImport(cause);
+            }
+            throw e;
+        }
+    }
+
+    private static ResponseEntity<?> rejectImport(Exception e) {
+        log.warn("Rejected recipe import: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(e.getLocalizedMessage());
     }
 
+    @GetMapping(value = "/export", produces = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportRecipes(@RequestParam(defaultValue = "ndjson") String format) {
+        log.info("Received request to export recipes as {}", format);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            try {
+                if (csv) {
+                    try (SequenceWriter writer = CSV_MAPPER.writer(RECIPE_CSV_SCHEMA).writeValues(out)) {
+                        recipeService.streamRecipes(null, recipe -> writeCsvRow(writer, recipe));
+                    }
+                } else {
+                    recipeService.streamRecipes(null, recipe -> writeLine(out, recipe));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(csv ? TEXT_CSV_VALUE : APPLICATION_NDJSON_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=recipes." + (csv ? "csv" : "ndjson"))
+                .body(body);
+    }
+
+    /**
+     * One recipe, as JSON or as a protobuf {@code Recipe}; the ETag is the recipe's version.
+     */
     @Timed(value = "gateway.getRecipeById", description = "Time taken to fetch recipe by ID")
     @GetMapping("/{id}")
-    public ResponseEntity<RecipeResponseDTO> getRecipeById(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<?>> getRecipeById(
+            @PathVariable String id,
+            @RequestHeader(name = CONSISTENCY_TOKEN_HEADER, required = false) String consistencyToken,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
         log.info("Received request to fetch recipe by ID: {}", id);
-        RecipeResponseDTO recipe = recipeService.getRecipeById(id);
-        log.info("Returning recipe: {}", recipe);
-        return ResponseEntity.ok(recipe);
+        boolean protobuf = prefersProtobuf(accept);
+        return recipeService.getRecipeById(id, consistencyToken).thenApply(recipe -> {
+            log.info("Returning recipe: {}", recipe);
+            String version = recipe.getVersion() > 0 ? Long.toString(recipe.getVersion()) : null;
+            return versioned(version, protobuf, recipe, RecipeMapper::toProto);
+        });
     }
 
     @Timed(value = "gateway.createRecipe", description = "Time taken to create a recipe")
     @PostMapping
-    public ResponseEntity<?> createRecipe(@RequestBody RecipeRequestDTO recipeRequestDTO) {
+    public CompletableFuture<ResponseEntity<?>> createRecipe(@RequestBody RecipeRequestDTO recipeRequestDTO) {
         log.info("Received request to create new recipe: {}", recipeRequestDTO);
-        try {
-            recipeService.saveNewRecipe(recipeRequestDTO);
+        return recipeService.saveNewRecipe(recipeRequestDTO).thenApply(token -> {
             log.info("Recipe successfully created: {}", recipeRequestDTO);
-            return ResponseEntity.ok("Created");
-        } catch (Exception e) {
-            log.error("Error occurred while creating recipe: {}", recipeRequestDTO, e);
-            return ResponseEntity.status(500).body(e.getLocalizedMessage());
-        }
+            return ResponseEntity.ok().header(CONSISTENCY_TOKEN_HEADER, token).body("Created");
+        });
     }
 
     @Timed(value = "gateway.updateRecipe", description = "Time taken to update a recipe")
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateRecipe(@PathVariable String id, @RequestBody RecipeRequestDTO recipeRequestDTO) {
+    public CompletableFuture<ResponseEntity<?>> updateRecipe(@PathVariable String id, @RequestBody RecipeRequestDTO recipeRequestDTO) {
         log.info("Received request to update recipe with ID: {}", id);
-        try {
-            recipeService.updateRecipe(id, recipeRequestDTO);
+        return recipeService.updateRecipe(id, recipeRequestDTO).thenApply(token -> {
             log.info("Recipe with ID {} successfully updated.", id);
-            return ResponseEntity.ok("Updated");
-        } catch (Exception e) {
-            log.error("Error occurred while updating recipe with ID {}: {}", id, e);
-            return ResponseEntity.status(500).body(e.getLocalizedMessage());
-        }
+            return ResponseEntity.ok().header(CONSISTENCY_TOKEN_HEADER, token).body("Updated");
+        });
     }
 
     @Timed(value = "gateway.deleteRecipe", description = "Time taken to delete a recipe")
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteRecipe(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<?>> deleteRecipe(@PathVariable String id) {
         log.info("Received request to delete recipe with ID: {}", id);
-        try {
-            recipeService.deleteRecipe(id);
+        return recipeService.deleteRecipe(id).thenApply(token -> {
             log.info("Recipe with ID {} successfully deleted.", id);
-            return ResponseEntity.ok("Deleted");
-        } catch (Exception e) {
-            log.error("Error occurred while deleting recipe with ID {}: {}", id, e);
-            return ResponseEntity.status(500).body(e.getLocalizedMessage());
+            return ResponseEntity.ok().header(CONSISTENCY_TOKEN_HEADER, token).body("Deleted");
+        });
+    }
+
+    @ExceptionHandler(CommandBackpressureException.class)
+    public ResponseEntity<String> handleBackpressure(CommandBackpressureException e) {
+        log.warn("Refusing write: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getLocalizedMessage());
+    }
+
+    // The command may or may not have reached the queue, so the client has to retry to be sure
+    @ExceptionHandler({CommandPublishException.class, AmqpException.class})
+    public ResponseEntity<String> handlePublishError(RuntimeException e) {
+        log.error("Recipe command was not confirmed by RabbitMQ", e);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getLocalizedMessage());
+    }
+
+    @ExceptionHandler(StatusRuntimeException.class)
+    public ResponseEntity<String> handleGrpcError(StatusRuntimeException e) {
+        log.error("gRPC call to domain service failed: {}", e.getStatus());
+        HttpStatus status = switch (e.getStatus().getCode()) {
+            case DEADLINE_EXCEEDED -> HttpStatus.GATEWAY_TIMEOUT;
+            case UNAVAILABLE, RESOURCE_EXHAUSTED -> HttpStatus.SERVICE_UNAVAILABLE;
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case INVALID_ARGUMENT -> HttpStatus.BAD_REQUEST;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        return ResponseEntity.status(status).body(e.getLocalizedMessage());
+    }
+
+    /**
+     * A 200 with the given ETag (unless {@code version} is null). Spring MVC turns it into a 304 when
+     * the request's {@code If-None-Match} matches, so only the version had to be known up front.
+     */
+    private static <T> ResponseEntity<?> versioned(String version, boolean protobuf, T body, Function<T, ?> toProto) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache());
+        if (version != null) {
+            response.eTag(eTag(version, protobuf));
+        }
+        return protobuf ? response.contentType(APPLICATION_PROTOBUF).body(toProto.apply(body)) : response.body(body);
+    }
+
+    private static ResponseEntity<?> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    // Strong ETags name one representation, so the protobuf one gets its own
+    private static String eTag(String version, boolean protobuf) {
+        return '"' + version + (protobuf ? "-pb" : "") + '"';
+    }
+
+    // If-None-Match uses weak comparison: W/ prefixes are ignored
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean prefersProtobuf(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        try {
+            List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+            double protobuf = quality(accepted, APPLICATION_PROTOBUF);
+            return protobuf > 0 && protobuf >= quality(accepted, MediaType.APPLICATION_JSON);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static double quality(List<MediaType> accepted, MediaType mediaType) {
+        double quality = 0;
+        for (MediaType candidate : accepted) {
+            if (candidate.equalsTypeAndSubtype(mediaType)) {
+                quality = Math.max(quality, candidate.getQualityValue());
+            }
+        }
+        return quality;
+    }
+
+    private static void writeCsvRow(SequenceWriter writer, RecipeResponseDTO recipe) {
+        try {
+            writer.write(recipe);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(OutputStream out, RecipeResponseDTO recipe) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(recipe));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.example.gateway.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The full recipe list and its version, {@code <highest write version>-<recipe count>}. Write versions
+ * come from one growing sequence (deletes take one too), so the version changes with every write to
+ * the list; it is the list's ETag.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeCatalogDTO {
+    private List<RecipeResponseDTO> recipes;
+    private String version;
+
+    public static RecipeCatalogDTO of(List<RecipeResponseDTO> recipes) {
+        long highestVersion = 0;
+        for (RecipeResponseDTO recipe : recipes) {
+            highestVersion = Math.max(highestVersion, recipe.getVersion());
+        }
+        return new RecipeCatalogDTO(recipes, version(highestVersion, recipes.size()));
+    }
+
+    public static String version(long highestVersion, long recipeCount) {
+        return highestVersion + "-" + recipeCount;
+    }
+}
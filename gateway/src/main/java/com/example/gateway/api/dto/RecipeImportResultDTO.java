@@ -0,0 +1,13 @@
+package com.example.gateway.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeImportResultDTO {
+    private long received;
+    private long inserted;
+}
@@ -0,0 +1,15 @@
+package com.example.gateway.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipePageDTO {
+    private List<RecipeResponseDTO> recipes;
+    private String nextCursor;
+}
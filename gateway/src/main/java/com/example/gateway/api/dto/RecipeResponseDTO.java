@@ -12,4 +12,6 @@ public class RecipeResponseDTO {
     private String name;
     private String ingredients;
     private int cookingTime;
+    // Changes with every write of the recipe; 0 when unknown
+    private long version;
 }
@@ -0,0 +1,21 @@
+package com.example.gateway.api.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Query parameters of the recipe search; {@code null} fields are not applied.
+ */
+@Data
+@NoArgsConstructor
+public class RecipeSearchDTO {
+    private String name;
+    private String q;
+    private List<String> ingredient;
+    private Integer minCookingTime;
+    private Integer maxCookingTime;
+    private int limit;
+    private String after;
+}
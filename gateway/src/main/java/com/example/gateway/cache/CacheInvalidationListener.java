@@ -0,0 +1,17 @@
+package com.example.gateway.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationListener {
+
+    private final TwoLevelCacheManager cacheManager;
+
+    @RabbitListener(queues = "#{cacheInvalidationQueue.name}")
+    public void onInvalidation(CacheInvalidationMessage message) {
+        cacheManager.applyRemoteInvalidation(message);
+    }
+}
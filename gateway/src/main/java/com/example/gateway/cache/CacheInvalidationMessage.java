@@ -0,0 +1,7 @@
+package com.example.gateway.cache;
+
+/**
+ * L1 invalidation broadcast to every gateway instance. A {@code null} key means the whole cache.
+ */
+public record CacheInvalidationMessage(String origin, String cacheName, String key) {
+}
@@ -0,0 +1,47 @@
+package com.example.gateway.cache;
+
+import com.example.gateway.config.RabbitMQConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.UUID;
+
+/**
+ * Broadcasts L1 invalidations to every gateway instance through the recipe exchange;
+ * each instance consumes them from its own auto-delete queue.
+ */
+@Slf4j
+public class CacheInvalidationPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public CacheInvalidationPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(new CacheInvalidationMessage(instanceId, cacheName, key));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(new CacheInvalidationMessage(instanceId, cacheName, null));
+    }
+
+    private void publish(CacheInvalidationMessage message) {
+        try {
+            rabbitTemplate.convertAndSend(
+                    RabbitMQConfig.directExchangeName,
+                    RabbitMQConfig.cacheInvalidationRoutingKey,
+                    message
+            );
+        } catch (Exception e) {
+            // Other instances fall back to the L1 TTL for this entry
+            log.warn("Failed to publish cache invalidation: {}", message, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.gateway.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consistency tokens for read-your-writes. A write returns its command id as the token; once the
+ * domain's committed event for that command has been applied to the caches, the token is recorded in
+ * Redis, shared by all gateway instances. A read carrying the token waits until it shows up there.
+ */
+@Slf4j
+public class CommittedWrites {
+
+    private static final String KEY_PREFIX = "recipeCommitted::";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration tokenTtl;
+    private final Duration maxWait;
+    private final Executor pollDelay;
+
+    public CommittedWrites(StringRedisTemplate redisTemplate, Duration tokenTtl, Duration maxWait, Duration pollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.tokenTtl = tokenTtl;
+        this.maxWait = maxWait;
+        this.pollDelay = CompletableFuture.delayedExecutor(pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Marks the command as applied, with the recipe version it produced.
+     */
+    public void record(String commandId, long version) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + commandId, Long.toString(version), tokenTtl);
+    }
+
+    /**
+     * Completes with {@code true} as soon as the token's write has been applied, or with {@code false}
+     * once {@code max-wait} has passed without it. Waiting is polling on a timer, not a blocked thread.
+     */
+    public CompletableFuture<Boolean> await(String token) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        poll(token, System.nanoTime() + maxWait.toNanos(), result);
+        return result;
+    }
+
+    private void poll(String token, long deadline, CompletableFuture<Boolean> result) {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + token))) {
+                result.complete(true);
+            } else if (System.nanoTime() - deadline >= 0) {
+                log.info("Write {} not applied within {}", token, maxWait);
+                result.complete(false);
+            } else {
+                pollDelay.execute(() -> poll(token, deadline, result));
+            }
+        } catch (RuntimeException e) {
+            // Treated like a timeout: the read falls back to the domain service
+            log.warn("Cannot check write {}", token, e);
+            result.complete(false);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.gateway.cache;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import com.example.gateway.mapper.RecipeMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores cached recipes in the {@link RecipeProto} wire format instead of JSON with class hints.
+ * <p>
+ * Layout: one header byte (value type, plus {@link #GZIP_FLAG} when the payload is compressed)
+ * followed by the protobuf payload. Payloads larger than the compression threshold are gzipped.
+ * Values without a known header are read as JSON, so entries written before switching
+ * serializers stay readable until they expire.
+ */
+public class ProtobufRecipeRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte RECIPE = 0x01;
+    private static final byte RECIPE_LIST = 0x02;
+    private static final byte GZIP_FLAG = (byte) 0x80;
+
+    private final int compressionThreshold;
+    private final GenericJackson2JsonRedisSerializer jsonFallback = new GenericJackson2JsonRedisSerializer();
+
+    public ProtobufRecipeRedisSerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof RecipeResponseDTO recipe) {
+            return encode(RECIPE, RecipeMapper.toProto(recipe));
+        }
+        if (value instanceof List<?> list && list.stream().allMatch(RecipeResponseDTO.class::isInstance)) {
+            RecipeProto.RecipeListResponse.Builder builder = RecipeProto.RecipeListResponse.newBuilder();
+            list.forEach(recipe -> builder.addRecipes(RecipeMapper.toProto((RecipeResponseDTO) recipe)));
+            return encode(RECIPE_LIST, builder.build());
+        }
+        throw new SerializationException("Unsupported cache value type: " + value.getClass().getName());
+    }
+
+    @Override
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte header = bytes[0];
+        byte type = (byte) (header & ~GZIP_FLAG);
+        if (type != RECIPE && type != RECIPE_LIST) {
+            return jsonFallback.deserialize(bytes);
+        }
+        try (InputStream payload = payload(bytes, (header & GZIP_FLAG) != 0)) {
+            if (type == RECIPE) {
+                return RecipeMapper.toResponse(RecipeProto.Recipe.parseFrom(payload));
+            }
+            return RecipeMapper.toResponses(RecipeProto.RecipeListResponse.parseFrom(payload).getRecipesList());
+        } catch (InvalidProtocolBufferException e) {
+            throw new SerializationException("Cannot parse cached recipe", e);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot decompress cached recipe", e);
+        }
+    }
+
+    private byte[] encode(byte type, MessageLite message) {
+        byte[] payload = message.toByteArray();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 1);
+            if (payload.length > compressionThreshold) {
+                out.write(type | GZIP_FLAG);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(payload);
+                }
+            } else {
+                out.write(type);
+                out.write(payload);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Cannot compress cached recipe", e);
+        }
+    }
+
+    private static InputStream payload(byte[] bytes, boolean compressed) throws IOException {
+        InputStream in = new ByteArrayInputStream(bytes, 1, bytes.length - 1);
+        return compressed ? new GZIPInputStream(in) : in;
+    }
+}
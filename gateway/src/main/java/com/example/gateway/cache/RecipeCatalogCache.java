@@ -0,0 +1,372 @@
+package com.example.gateway.cache;
+
+import com.example.gateway.api.dto.RecipeCatalogDTO;
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static com.example.gateway.config.RedisConfig.REDIS_ALL_RECIPES_CACHE_KEY;
+
+/**
+ * The full recipe list, kept in Redis as one hash (recipe id -> encoded recipe) that writes patch in place
+ * instead of dropping the whole list. A sentinel field marks the hash as a complete catalog, so an
+ * empty catalog can be told apart from a missing one; its value is how long the last full load took.
+ * A second one holds the highest write version applied to the hash, which with the hash size makes up
+ * the catalog version (see {@link RecipeCatalogDTO}), so it can be checked without reading the recipes.
+ * <p>
+ * Next to it, {@code allRecipes:versions} holds the newest version seen per recipe, deletes included, and
+ * {@code allRecipes:applied} when each recipe last changed. Committed events and loads only write a recipe
+ * whose known version is older, so an event arriving late or a load that read a snapshot from before
+ * an event cannot undo a newer write. Events are applied whether or not the catalog is loaded, so
+ * a load running meanwhile does not miss them. A load is merged rather than swapped in: recipes it does
+ * not contain are only dropped if they did not change within {@code load-grace} before it started,
+ * which has to cover how far behind the primary the domain's reads may be (replica lag). That sweep walks the
+ * hashes with HSCAN and drops ids in chunks, so no single script has to go through the whole catalog.
+ * <p>
+ * Reloads are single-flight per gateway instance, and a catalog close to expiry is refreshed early
+ * with a probability that grows as the TTL runs out (XFetch), so expiry does not send every
+ * concurrent reader to the domain service at once.
+ * <p>
+ * Reads are counted in {@code recipe.cache.lookups} like the other caches; the catalog has no L1,
+ * so every hit is an {@code l2_hit}. Redis round trips are {@code recipe.cache} observations, as in {@link TwoLevelCache}.
+ */
+@Slf4j
+public class RecipeCatalogCache {
+
+    private static final String LOADED_FIELD = "__loaded__";
+    private static final String VERSION_FIELD = "__version__";
+    private static final int SENTINEL_FIELDS = 2;
+    private static final String VERSIONS_KEY = REDIS_ALL_RECIPES_CACHE_KEY + ":versions";
+    private static final String APPLIED_KEY = REDIS_ALL_RECIPES_CACHE_KEY + ":applied";
+    private static final List<String> KEYS = List.of(REDIS_ALL_RECIPES_CACHE_KEY, VERSIONS_KEY, APPLIED_KEY);
+    // Recipes per merge or sweep script call, and hash fields per HSCAN page, to keep each one short
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String NOW_MILLIS =
+            "local t = redis.call('TIME') local now = t[1] * 1000 + math.floor(t[2] / 1000) ";
+    private static final String RAISE_VERSION = "local function raiseVersion(version) " +
+            "local current = redis.call('HGET', KEYS[1], '" + VERSION_FIELD + "') " +
+            "if not current or tonumber(version) > tonumber(current) then " +
+            "redis.call('HSET', KEYS[1], '" + VERSION_FIELD + "', version) end end ";
+    private static final String EXPIRE_IF_PERSISTENT = "for i = 1, #KEYS do if redis.call('PTTL', KEYS[i]) == -1 then " +
+            "redis.call('PEXPIRE', KEYS[i], ARGV[1]) end end ";
+
+    // A committed event. KEYS: catalog, versions, applied; ARGV: ttl millis, write version, recipe id[, encoded recipe]
+    private static final String APPLY_IF_NEWER = NOW_MILLIS + RAISE_VERSION +
+            "local known = redis.call('HGET', KEYS[2], ARGV[3]) " +
+            "if known and tonumber(known) >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('HSET', KEYS[2], ARGV[3], ARGV[2]) " +
+            "redis.call('ZADD', KEYS[3], now, ARGV[3]) " +
+            "raiseVersion(ARGV[2]) ";
+    private static final RedisScript<Long> UPSERT = RedisScript.of(APPLY_IF_NEWER +
+            "redis.call('HSET', KEYS[1], ARGV[3], ARGV[4]) " + EXPIRE_IF_PERSISTENT + "return 1", Long.class);
+    private static final RedisScript<Long> REMOVE = RedisScript.of(APPLY_IF_NEWER +
+            "redis.call('HDEL', KEYS[1], ARGV[3]) " + EXPIRE_IF_PERSISTENT + "return 1", Long.class);
+
+    // Part of a load. KEYS: catalog, versions, applied; ARGV: ttl millis, then (id, version, encoded recipe)...
+    private static final RedisScript<Long> MERGE = RedisScript.of(NOW_MILLIS +
+            "local stored = 0 " +
+            "for i = 2, #ARGV, 3 do " +
+            "local known = redis.call('HGET', KEYS[2], ARGV[i]) " +
+            "if not known or tonumber(known) < tonumber(ARGV[i + 1]) then " +
+            "redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 2]) " +
+            "redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 1]) " +
+            "redis.call('ZADD', KEYS[3], now, ARGV[i]) " +
+            "stored = stored + 1 end end " +
+            EXPIRE_IF_PERSISTENT + "return stored", Long.class);
+
+    // Drops recipes (and delete markers) a load did not contain unless they changed after its start minus the
+    // grace period. KEYS: catalog, versions, applied; ARGV: cutoff millis, then ids the load did not contain...
+    private static final RedisScript<Long> SWEEP = RedisScript.of(
+            "local cutoff = tonumber(ARGV[1]) " +
+            "local removed = 0 " +
+            "for i = 2, #ARGV do " +
+            "local applied = redis.call('ZSCORE', KEYS[3], ARGV[i]) " +
+            "if not applied or tonumber(applied) < cutoff then " +
+            "removed = removed + redis.call('HDEL', KEYS[1], ARGV[i]) " +
+            "redis.call('HDEL', KEYS[2], ARGV[i]) end end " +
+            "return removed", Long.class);
+
+    // Completes a load: marks the catalog loaded and restarts the TTL.
+    // KEYS: catalog, versions, applied; ARGV: ttl millis, load duration millis, highest version loaded
+    private static final RedisScript<Long> COMPLETE_LOAD = RedisScript.of(NOW_MILLIS + RAISE_VERSION +
+            // Change times only matter to loads still running, none of which started a TTL ago
+            "redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', now - tonumber(ARGV[1])) " +
+            "redis.call('HSET', KEYS[1], '" + LOADED_FIELD + "', ARGV[2]) " +
+            "raiseVersion(ARGV[3]) " +
+            "for i = 1, 3 do redis.call('PEXPIRE', KEYS[i], ARGV[1]) end " +
+            "return 1", Long.class);
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final RedisSerializer<Object> valueSerializer;
+    private final Duration ttl;
+    private final Duration loadGrace;
+    private final double earlyRefreshBeta;
+    private final SingleFlight<String, RecipeCatalogDTO> loads = new SingleFlight<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Counter hits;
+    private final Counter misses;
+    private final ObservationRegistry observationRegistry;
+
+    public RecipeCatalogCache(RedisTemplate<String, byte[]> redisTemplate,
+                              RedisSerializer<Object> valueSerializer,
+                              Duration ttl,
+                              Duration loadGrace,
+                              double earlyRefreshBeta,
+                              MeterRegistry meterRegistry,
+                              ObservationRegistry observationRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.valueSerializer = valueSerializer;
+        this.ttl = ttl;
+        this.loadGrace = loadGrace;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.hits = lookupCounter(meterRegistry, "l2_hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Returns the cached catalog, loading it with {@code loader} when it is missing. When it is
+     * due for an early refresh, the reload runs in the background and the cached copy is returned.
+     */
+    public CompletableFuture<RecipeCatalogDTO> getAll(Supplier<CompletableFuture<List<RecipeResponseDTO>>> loader) {
+        return getAll(loader, false);
+    }
+
+    /**
+     * {@link #getAll(Supplier)}; when {@code fresh}, a missing catalog is loaded by this caller alone
+     * instead of joining a load that may have read the recipes before a write the caller must see.
+     */
+    public CompletableFuture<RecipeCatalogDTO> getAll(Supplier<CompletableFuture<List<RecipeResponseDTO>>> loader,
+                                                      boolean fresh) {
+        CatalogSnapshot snapshot = observation("get").observe(this::readSnapshot);
+        if (snapshot == null) {
+            misses.increment();
+            if (fresh) {
+                return loadAndRead(loader);
+            }
+            return loads.executeAsync(REDIS_ALL_RECIPES_CACHE_KEY, () -> {
+                CatalogSnapshot current = observation("get").observe(this::readSnapshot);
+                return current != null ? CompletableFuture.completedFuture(current.catalog()) : loadAndRead(loader);
+            });
+        }
+        hits.increment();
+        // Only one caller refreshes early; everyone keeps being served the current catalog meanwhile
+        if (shouldRefreshEarly(snapshot) && refreshing.compareAndSet(false, true)) {
+            log.info("Refreshing recipe catalog {} ms before expiry", snapshot.ttlMillis());
+            try {
+                load(loader).whenComplete((recipes, error) -> {
+                    refreshing.set(false);
+                    if (error != null) {
+                        log.warn("Early refresh of recipe catalog failed", error);
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshing.set(false);
+                log.warn("Early refresh of recipe catalog failed", e);
+            }
+        }
+        return CompletableFuture.completedFuture(snapshot.catalog());
+    }
+
+    /**
+     * Version of the cached catalog, or {@code null} when none is loaded. Costs two field reads and the
+     * hash size instead of the whole list, so conditional requests can be answered cheaply.
+     */
+    public String currentVersion() {
+        List<Object> results = observation("version").observe(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            public Object execute(@NonNull RedisOperations operations) throws DataAccessException {
+                operations.opsForHash().multiGet(REDIS_ALL_RECIPES_CACHE_KEY, List.of(LOADED_FIELD, VERSION_FIELD));
+                operations.opsForHash().size(REDIS_ALL_RECIPES_CACHE_KEY);
+                return null;
+            }
+        }));
+        List<?> fields = (List<?>) results.get(0);
+        if (fields.get(0) == null || fields.get(1) == null) {
+            return null;
+        }
+        long highestVersion = Long.parseLong(new String((byte[]) fields.get(1), StandardCharsets.UTF_8));
+        return RecipeCatalogDTO.version(highestVersion, (Long) results.get(1) - SENTINEL_FIELDS);
+    }
+
+    /**
+     * Applies a committed create or update; ignored if a newer write of the recipe is already known.
+     */
+    public void upsert(RecipeResponseDTO recipe) {
+        observation("upsert").observe(() -> redisTemplate.execute(UPSERT, KEYS, utf8(Long.toString(ttl.toMillis())),
+                utf8(Long.toString(recipe.getVersion())), utf8(recipe.getId()), valueSerializer.serialize(recipe)));
+    }
+
+    /**
+     * Removes a deleted recipe; {@code version} is the version of the delete.
+     */
+    public void remove(String id, long version) {
+        observation("evict").observe(() -> redisTemplate.execute(REMOVE, KEYS, utf8(Long.toString(ttl.toMillis())),
+                utf8(Long.toString(version)), utf8(id)));
+    }
+
+    /**
+     * Drops the catalog so the next read reloads it, for changes too large to patch in place.
+     */
+    public void invalidate() {
+        observation("clear").observe(() -> redisTemplate.delete(KEYS));
+    }
+
+    private CompletableFuture<List<RecipeResponseDTO>> load(Supplier<CompletableFuture<List<RecipeResponseDTO>>> loader) {
+        // Redis' clock, the one the scripts record change times with
+        long loadStart = redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.serverCommands().time(TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        return loader.get().thenApply(recipes -> {
+            long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            observation("put_all").observe(() -> merge(recipes, loadStart, loadMillis));
+            return recipes;
+        });
+    }
+
+    // Answers with the merged catalog, which includes the writes applied while the load was running
+    private CompletableFuture<RecipeCatalogDTO> loadAndRead(Supplier<CompletableFuture<List<RecipeResponseDTO>>> loader) {
+        return load(loader).thenApply(recipes -> {
+            CatalogSnapshot merged = observation("get").observe(this::readSnapshot);
+            return merged != null ? merged.catalog() : RecipeCatalogDTO.of(recipes);
+        });
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("recipe.cache.lookups")
+                .description("Cache lookups by the tier that answered them")
+                .tag("cache", REDIS_ALL_RECIPES_CACHE_KEY)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Observation observation(String operation) {
+        return Observation.createNotStarted("recipe.cache", observationRegistry)
+                .contextualName("recipe-cache " + operation)
+                .lowCardinalityKeyValue("cache", REDIS_ALL_RECIPES_CACHE_KEY)
+                .lowCardinalityKeyValue("operation", operation);
+    }
+
+    private boolean shouldRefreshEarly(CatalogSnapshot snapshot) {
+        if (earlyRefreshBeta <= 0 || snapshot.ttlMillis() < 0) {
+            return false;
+        }
+        double gap = -snapshot.loadMillis() * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return gap >= snapshot.ttlMillis();
+    }
+
+    private CatalogSnapshot readSnapshot() {
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            public Object execute(@NonNull RedisOperations operations) throws DataAccessException {
+                operations.opsForHash().entries(REDIS_ALL_RECIPES_CACHE_KEY);
+                operations.getExpire(REDIS_ALL_RECIPES_CACHE_KEY, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        });
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> entries = (Map<Object, Object>) results.get(0);
+        byte[] loadMillis = (byte[]) entries.get(LOADED_FIELD);
+        if (loadMillis == null) {
+            return null;
+        }
+        List<RecipeResponseDTO> recipes = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            if (!LOADED_FIELD.equals(entry.getKey()) && !VERSION_FIELD.equals(entry.getKey())) {
+                recipes.add((RecipeResponseDTO) valueSerializer.deserialize((byte[]) entry.getValue()));
+            }
+        }
+        // Catalogs stored before the version field existed get one from their content
+        byte[] highestVersion = (byte[]) entries.get(VERSION_FIELD);
+        RecipeCatalogDTO catalog = highestVersion == null ? RecipeCatalogDTO.of(recipes)
+                : new RecipeCatalogDTO(recipes, RecipeCatalogDTO.version(
+                        Long.parseLong(new String(highestVersion, StandardCharsets.UTF_8)), recipes.size()));
+        long loadTime = Long.parseLong(new String(loadMillis, StandardCharsets.UTF_8));
+        return new CatalogSnapshot(catalog, loadTime, (Long) results.get(1));
+    }
+
+    private void merge(List<RecipeResponseDTO> recipes, long loadStart, long loadMillis) {
+        byte[] ttlMillis = utf8(Long.toString(ttl.toMillis()));
+        long highestVersion = 0;
+        long stored = 0;
+        for (int from = 0; from < recipes.size(); from += CHUNK_SIZE) {
+            List<RecipeResponseDTO> chunk = recipes.subList(from, Math.min(from + CHUNK_SIZE, recipes.size()));
+            List<byte[]> args = new ArrayList<>(1 + 3 * chunk.size());
+            args.add(ttlMillis);
+            for (RecipeResponseDTO recipe : chunk) {
+                args.add(utf8(recipe.getId()));
+                args.add(utf8(Long.toString(recipe.getVersion())));
+                args.add(valueSerializer.serialize(recipe));
+                highestVersion = Math.max(highestVersion, recipe.getVersion());
+            }
+            stored += redisTemplate.execute(MERGE, KEYS, args.toArray());
+        }
+        Set<String> loaded = new HashSet<>(recipes.size() * 2);
+        recipes.forEach(recipe -> loaded.add(recipe.getId()));
+        byte[] cutoff = utf8(Long.toString(loadStart - loadGrace.toMillis()));
+        long removed = sweep(REDIS_ALL_RECIPES_CACHE_KEY, loaded, cutoff) + sweep(VERSIONS_KEY, loaded, cutoff);
+        redisTemplate.execute(COMPLETE_LOAD, KEYS, ttlMillis, utf8(Long.toString(loadMillis)),
+                utf8(Long.toString(highestVersion)));
+        log.info("Stored recipe catalog with {} recipes ({} changed, {} removed)", recipes.size(), stored, removed);
+    }
+
+    // Hands the ids of one hash the load did not contain to the sweep script, a chunk at a time
+    private long sweep(String key, Set<String> loaded, byte[] cutoff) {
+        long removed = 0;
+        List<byte[]> args = new ArrayList<>(1 + CHUNK_SIZE);
+        args.add(cutoff);
+        try (Cursor<Map.Entry<String, byte[]>> fields = redisTemplate.<String, byte[]>opsForHash()
+                .scan(key, ScanOptions.scanOptions().count(CHUNK_SIZE).build())) {
+            while (fields.hasNext()) {
+                String id = fields.next().getKey();
+                if (!LOADED_FIELD.equals(id) && !VERSION_FIELD.equals(id) && !loaded.contains(id)) {
+                    args.add(utf8(id));
+                }
+                if (args.size() > CHUNK_SIZE) {
+                    removed += redisTemplate.execute(SWEEP, KEYS, args.toArray());
+                    args.subList(1, args.size()).clear();
+                }
+            }
+        }
+        if (args.size() > 1) {
+            removed += redisTemplate.execute(SWEEP, KEYS, args.toArray());
+        }
+        return removed;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record CatalogSnapshot(RecipeCatalogDTO catalog, long loadMillis, long ttlMillis) {
+    }
+}
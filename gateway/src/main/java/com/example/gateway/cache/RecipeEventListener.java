@@ -0,0 +1,105 @@
+package com.example.gateway.cache;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import com.example.gateway.config.RabbitMQConfig;
+import com.example.gateway.mapper.RecipeMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.gateway.config.RedisConfig.REDIS_RECIPE_BY_ID_CACHE_KEY;
+
+/**
+ * Writes committed recipe changes into the caches; together with cache-aside loads, which never
+ * overwrite an entry, this is the only way a recipe gets into them, so they never hold a write the
+ * domain did not persist. A delete leaves a short-lived tombstone that keeps an in-flight load of the
+ * old recipe out. The event's command id is recorded last, releasing reads that wait for it.
+ * <p>
+ * A failure to update the caches is rethrown so the event is redelivered rather than lost.
+ * {@code recipe.events.lag} times each event from its commit on the domain until it is applied here.
+ */
+@Slf4j
+@Component
+public class RecipeEventListener {
+
+    private final CacheManager cacheManager;
+    private final RecipeCatalogCache recipeCatalogCache;
+    private final CommittedWrites committedWrites;
+    private final Timer upsertLag;
+    private final Timer deleteLag;
+
+    public RecipeEventListener(CacheManager cacheManager,
+                               RecipeCatalogCache recipeCatalogCache,
+                               CommittedWrites committedWrites,
+                               MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.recipeCatalogCache = recipeCatalogCache;
+        this.committedWrites = committedWrites;
+        this.upsertLag = lagTimer(meterRegistry, RecipeProto.RecipeEvent.Type.UPSERTED);
+        this.deleteLag = lagTimer(meterRegistry, RecipeProto.RecipeEvent.Type.DELETED);
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.recipeEventCacheQueueName)
+    public void onEvent(Message message) {
+        RecipeProto.RecipeEvent event;
+        try {
+            event = RecipeProto.RecipeEvent.parseFrom(message.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            throw new AmqpRejectAndDontRequeueException("Unreadable recipe event", e);
+        }
+        log.debug("Applying {} event for recipe {} (version {})", event.getType(), event.getId(), event.getVersion());
+
+        Cache cacheById = cacheManager.getCache(REDIS_RECIPE_BY_ID_CACHE_KEY);
+        switch (event.getType()) {
+            case UPSERTED -> {
+                RecipeResponseDTO recipe = RecipeMapper.toResponse(event.getRecipe());
+                recipe.setVersion(event.getVersion());
+                if (cacheById != null) {
+                    cacheById.put(event.getId(), recipe);
+                }
+                recipeCatalogCache.upsert(recipe);
+                recordLag(upsertLag, event);
+            }
+            case DELETED -> {
+                if (cacheById != null) {
+                    cacheById.put(event.getId(), null);
+                }
+                recipeCatalogCache.remove(event.getId(), event.getVersion());
+                recordLag(deleteLag, event);
+            }
+            default -> {
+                log.warn("Skipping recipe event of unknown type {} for {}", event.getType(), event.getId());
+                return;
+            }
+        }
+        if (!event.getCommandId().isEmpty()) {
+            committedWrites.record(event.getCommandId(), event.getVersion());
+        }
+    }
+
+    private static void recordLag(Timer lag, RecipeProto.RecipeEvent event) {
+        if (event.getTimestamp() > 0) {
+            // Wall clocks of two hosts; skew can make this negative
+            lag.record(Math.max(0, System.currentTimeMillis() - event.getTimestamp()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Timer lagTimer(MeterRegistry meterRegistry, RecipeProto.RecipeEvent.Type type) {
+        return Timer.builder("recipe.events.lag")
+                .description("Time from a recipe write committing to its event being applied to the caches")
+                .tag("type", type.name().toLowerCase(Locale.ROOT))
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
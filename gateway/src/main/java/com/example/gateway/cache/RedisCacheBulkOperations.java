@@ -0,0 +1,102 @@
+package com.example.gateway.cache;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-key access to the Redis side of a {@link RedisCache}, which itself only reads and writes one key
+ * per round trip: lookups are a single MGET and writes a single pipeline of SET NX with the cache's TTL.
+ * Keys and values go through the cache's own prefix and serializers, so entries are interchangeable
+ * with the ones {@link RedisCache} reads and writes.
+ */
+class RedisCacheBulkOperations {
+
+    // How RedisCache stores a cached null
+    private static final byte[] NULL_VALUE = RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+    private final RedisCache cache;
+    private final RedisTemplate<byte[], byte[]> redisTemplate;
+
+    RedisCacheBulkOperations(RedisCache cache, RedisTemplate<byte[], byte[]> redisTemplate) {
+        this.cache = cache;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Returns the cached value for each key that has one; missing keys are left out and
+     * tombstones (cached {@code null}s) map to {@code null}.
+     */
+    Map<String, Object> getAll(List<String> keys) {
+        byte[][] redisKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            redisKeys[i] = redisKey(keys.get(i));
+        }
+        List<byte[]> values = redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(redisKeys));
+        Map<String, Object> found = new HashMap<>();
+        if (values == null) {
+            return found;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            found.put(keys.get(i), Arrays.equals(value, NULL_VALUE) ? null
+                    : configuration().getValueSerializationPair().read(ByteBuffer.wrap(value)));
+        }
+        return found;
+    }
+
+    /**
+     * Writes each value whose key has no entry yet ({@code SET NX}).
+     *
+     * @return the values actually written
+     */
+    Map<String, Object> putAllIfAbsent(Map<String, ?> values) {
+        List<String> keys = new ArrayList<>(values.keySet());
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> setIfAbsent(connection, key, values.get(key)));
+            return null;
+        });
+        Map<String, Object> stored = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                stored.put(keys.get(i), values.get(keys.get(i)));
+            }
+        }
+        return stored;
+    }
+
+    private void setIfAbsent(RedisConnection connection, String key, Object value) {
+        Duration ttl = configuration().getTtlFunction().getTimeToLive(key, value);
+        Expiration expiration = ttl.isZero() || ttl.isNegative() ? Expiration.persistent() : Expiration.from(ttl);
+        byte[] redisValue = ByteUtils.getBytes(configuration().getValueSerializationPair().write(value));
+        connection.stringCommands().set(redisKey(key), redisValue, expiration, RedisStringCommands.SetOption.ifAbsent());
+    }
+
+    private byte[] redisKey(String key) {
+        String prefixed = configuration().usePrefix() ? configuration().getKeyPrefixFor(cache.getName()) + key : key;
+        return ByteUtils.getBytes(configuration().getKeySerializationPair().write(prefixed));
+    }
+
+    private RedisCacheConfiguration configuration() {
+        return cache.getCacheConfiguration();
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.gateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Cache with an in-process L1 (Caffeine) in front of a shared L2 (Redis).
+ * Reads are served from L1 when possible; every write goes through to L2 and
+ * is announced to the other gateway instances so they drop their L1 copy.
+ * <p>
+ * Lookups are counted in {@code recipe.cache.lookups} by the tier that answered them, including the
+ * multi-key reads that bypass the per-tier cache statistics. Every L2 round trip is a {@code recipe.cache}
+ * observation (a span and a timer per cache and operation); L1 hits are not, they are too cheap to trace.
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache;
+    private final Cache remoteCache;
+    private final CacheInvalidationPublisher invalidationPublisher;
+    @Nullable
+    private final RedisCacheBulkOperations bulkOperations;
+    private final SingleFlight<String, Object> loads = new SingleFlight<>();
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+    private final ObservationRegistry observationRegistry;
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache,
+                         Cache remoteCache,
+                         CacheInvalidationPublisher invalidationPublisher,
+                         @Nullable RedisCacheBulkOperations bulkOperations,
+                         MeterRegistry meterRegistry,
+                         ObservationRegistry observationRegistry) {
+        this.name = name;
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.invalidationPublisher = invalidationPublisher;
+        this.bulkOperations = bulkOperations;
+        this.localHits = lookupCounter(meterRegistry, name, "l1_hit");
+        this.remoteHits = lookupCounter(meterRegistry, name, "l2_hit");
+        this.misses = lookupCounter(meterRegistry, name, "miss");
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    @NonNull
+    public Object getNativeCache() {
+        return this;
+    }
+
+    public com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> getLocalCache() {
+        return localCache;
+    }
+
+    public Cache getRemoteCache() {
+        return remoteCache;
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(@NonNull Object key) {
+        return lookup(key, true, false);
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Object content = value.get();
+        if (content != null && type != null && !type.isInstance(content)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + content);
+        }
+        return (T) content;
+    }
+
+    /**
+     * Like {@link #get(Object)} but never answered from L1: another instance may have changed the entry
+     * in L2 and its invalidation may not have reached this instance yet. For reads that must see a write
+     * already known to be applied (a consistency token); the L2 value replaces the local copy.
+     */
+    @Nullable
+    public ValueWrapper getFresh(@NonNull Object key) {
+        return lookup(key, true, true);
+    }
+
+    /**
+     * Used by {@code @Cacheable(sync = true)}: on a miss only one caller per key and instance
+     * runs the loader, the rest wait for its result instead of hitting the domain service too.
+     */
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+        String localKey = localKey(key);
+        return (T) loads.execute(localKey, () -> {
+            // A flight for this key may have completed between our miss and acquiring this one
+            ValueWrapper current = lookup(key, false, false);
+            if (current != null) {
+                return current.get();
+            }
+            Object loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            observe("put", () -> remoteCache.put(key, loaded));
+            localCache.put(localKey, new SimpleValueWrapper(loaded));
+            return loaded;
+        });
+    }
+
+    /**
+     * Looks up many keys at once: L1 first, then the L1 misses from L2 in one round trip.
+     * Only keys with a cache entry are in the result, in the order they were asked for;
+     * a cached {@code null} (a tombstone) maps to {@code null}.
+     */
+    public Map<String, Object> getAll(List<String> keys) {
+        return getAll(keys, false);
+    }
+
+    /**
+     * {@link #getAll(List)}, with {@code fresh} skipping L1 as in {@link #getFresh(Object)}.
+     */
+    public Map<String, Object> getAll(List<String> keys, boolean fresh) {
+        Map<String, Object> found = new HashMap<>();
+        List<String> localMisses = new ArrayList<>();
+        for (String key : keys) {
+            ValueWrapper value = fresh ? null : localCache.getIfPresent(localKey(key));
+            if (value != null) {
+                found.put(key, value.get());
+            } else {
+                localMisses.add(key);
+            }
+        }
+        localHits.increment(keys.size() - localMisses.size());
+        if (!localMisses.isEmpty()) {
+            Map<String, Object> remote = observe("get_all", () -> remoteGetAll(localMisses));
+            for (String key : localMisses) {
+                if (remote.containsKey(key)) {
+                    localCache.put(localKey(key), new SimpleValueWrapper(remote.get(key)));
+                } else if (fresh) {
+                    localCache.invalidate(localKey(key));
+                }
+            }
+            found.putAll(remote);
+            remoteHits.increment(remote.size());
+            misses.increment(localMisses.size() - remote.size());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            if (found.containsKey(key)) {
+                result.put(key, found.get(key));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores values loaded from the domain service, in one L2 round trip, skipping keys that already
+     * have an entry: whatever the event stream wrote meanwhile (a newer version or a tombstone) wins
+     * over a read that may have started before it. Like a load through {@link #get(Object, Callable)},
+     * this announces nothing to other instances.
+     */
+    public void putAllIfAbsent(Map<String, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        observe("put_all_if_absent", () -> {
+            if (bulkOperations != null) {
+                Map<String, ?> stored = bulkOperations.putAllIfAbsent(values);
+                stored.forEach((key, value) -> localCache.put(localKey(key), new SimpleValueWrapper(value)));
+            } else {
+                values.forEach((key, value) -> {
+                    if (remoteCache.putIfAbsent(key, value) == null) {
+                        localCache.put(localKey(key), new SimpleValueWrapper(value));
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        observe("put", () -> remoteCache.put(key, value));
+        localCache.put(localKey(key), new SimpleValueWrapper(value));
+        invalidationPublisher.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        ValueWrapper existing = observe("put_if_absent", () -> remoteCache.putIfAbsent(key, value));
+        localCache.invalidate(localKey(key));
+        if (existing == null) {
+            invalidationPublisher.publishEvict(name, localKey(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        observe("evict", () -> remoteCache.evict(key));
+        localCache.invalidate(localKey(key));
+        invalidationPublisher.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(@NonNull Object key) {
+        boolean evicted = observe("evict", () -> remoteCache.evictIfPresent(key));
+        localCache.invalidate(localKey(key));
+        invalidationPublisher.publishEvict(name, localKey(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        observe("clear", remoteCache::clear);
+        localCache.invalidateAll();
+        invalidationPublisher.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = observe("clear", remoteCache::invalidate);
+        localCache.invalidateAll();
+        invalidationPublisher.publishClear(name);
+        return invalidated;
+    }
+
+    @Nullable
+    private ValueWrapper lookup(Object key, boolean counted, boolean skipLocal) {
+        String localKey = localKey(key);
+        ValueWrapper value = skipLocal ? null : localCache.getIfPresent(localKey);
+        if (value != null) {
+            if (counted) {
+                localHits.increment();
+            }
+            return value;
+        }
+        value = observe("get", () -> remoteCache.get(key));
+        if (value != null) {
+            localCache.put(localKey, value);
+        } else if (skipLocal) {
+            localCache.invalidate(localKey);
+        }
+        if (counted) {
+            (value != null ? remoteHits : misses).increment();
+        }
+        return value;
+    }
+
+    private Map<String, Object> remoteGetAll(List<String> keys) {
+        if (bulkOperations != null) {
+            return bulkOperations.getAll(keys);
+        }
+        Map<String, Object> found = new HashMap<>();
+        for (String key : keys) {
+            ValueWrapper value = remoteCache.get(key);
+            if (value != null) {
+                found.put(key, value.get());
+            }
+        }
+        return found;
+    }
+
+    private <T> T observe(String operation, Supplier<T> call) {
+        return observation(operation).observe(call);
+    }
+
+    private void observe(String operation, Runnable call) {
+        observation(operation).observe(call);
+    }
+
+    private Observation observation(String operation) {
+        return Observation.createNotStarted("recipe.cache", observationRegistry)
+                .contextualName("recipe-cache " + operation)
+                .lowCardinalityKeyValue("cache", name)
+                .lowCardinalityKeyValue("operation", operation);
+    }
+
+    /**
+     * Drops the local copy of a key after another instance changed it; L2 is left untouched.
+     */
+    void evictLocal(String localKey) {
+        localCache.invalidate(localKey);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String cacheName, String result) {
+        return Counter.builder("recipe.cache.lookups")
+                .description("Cache lookups by the tier that answered them")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // Same string form Redis uses for its keys, so invalidation messages identify entries across instances
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.boot.actuate.metrics.cache.RedisCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps every cache of a {@link RedisCacheManager} in a {@link TwoLevelCache} and applies
+ * L1 invalidations received from other gateway instances.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, BeanNameAware {
+
+    private static final String CACHE_MANAGER_SUFFIX = "cacheManager";
+
+    private final RedisCacheManager redisCacheManager;
+    private final RedisTemplate<byte[], byte[]> redisTemplate;
+    private final CacheInvalidationPublisher invalidationPublisher;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final long localMaximumSize;
+    private final Duration localTtl;
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private String cacheManagerName = CACHE_MANAGER_SUFFIX;
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager,
+                                RedisTemplate<byte[], byte[]> redisTemplate,
+                                CacheInvalidationPublisher invalidationPublisher,
+                                MeterRegistry meterRegistry,
+                                ObservationRegistry observationRegistry,
+                                long localMaximumSize,
+                                Duration localTtl) {
+        this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.invalidationPublisher = invalidationPublisher;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.localMaximumSize = localMaximumSize;
+        this.localTtl = localTtl;
+    }
+
+    /**
+     * Names the cache.manager tag of the cache metrics after the bean, as Spring Boot's CacheMetricsRegistrar
+     * does for the cache managers it instruments: "cacheManager" stays as is, "recipesCacheManager" becomes
+     * "recipes".
+     */
+    @Override
+    public void setBeanName(@NonNull String name) {
+        this.cacheManagerName = name.length() > CACHE_MANAGER_SUFFIX.length()
+                && StringUtils.endsWithIgnoreCase(name, CACHE_MANAGER_SUFFIX)
+                ? name.substring(0, name.length() - CACHE_MANAGER_SUFFIX.length())
+                : name;
+    }
+
+    @Override
+    @Nullable
+    public Cache getCache(@NonNull String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    @NonNull
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    public void applyRemoteInvalidation(CacheInvalidationMessage message) {
+        if (invalidationPublisher.getInstanceId().equals(message.origin())) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(message.cacheName());
+        if (cache == null) {
+            return;
+        }
+        if (message.key() == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(message.key());
+        }
+        log.debug("Applied remote cache invalidation: {}", message);
+    }
+
+    @Nullable
+    private TwoLevelCache createCache(String name) {
+        Cache remoteCache = redisCacheManager.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> localCache = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+
+        Tags tags = Tags.of("cache.manager", cacheManagerName);
+        new CaffeineCacheMetrics<>(localCache, name, tags.and("tier", "l1")).bindTo(meterRegistry);
+        RedisCacheBulkOperations bulkOperations = null;
+        if (remoteCache instanceof RedisCache redisCache) {
+            new RedisCacheMetrics(redisCache, tags.and("tier", "l2")).bindTo(meterRegistry);
+            bulkOperations = new RedisCacheBulkOperations(redisCache, redisTemplate);
+        }
+        return new TwoLevelCache(name, localCache, remoteCache, invalidationPublisher, bulkOperations, meterRegistry, observationRegistry);
+    }
+}
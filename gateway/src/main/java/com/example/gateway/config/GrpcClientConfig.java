@@ -0,0 +1,129 @@
+package com.example.gateway.config;
+
+import com.example.domain.grpc.RecipeServiceGrpc;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class GrpcClientConfig {
+
+    @Value("${recipe.grpc.load-balancing.policy:round_robin}")
+    private String loadBalancingPolicy;
+
+    @Value("${recipe.grpc.health-check.enabled:true}")
+    private boolean healthCheckEnabled;
+
+    @Value("${recipe.grpc.outlier-detection.enabled:true}")
+    private boolean outlierDetectionEnabled;
+
+    @Value("${recipe.grpc.outlier-detection.interval:PT10S}")
+    private Duration outlierDetectionInterval;
+
+    @Value("${recipe.grpc.outlier-detection.base-ejection-time:PT30S}")
+    private Duration baseEjectionTime;
+
+    @Value("${recipe.grpc.outlier-detection.max-ejection-percent:50}")
+    private int maxEjectionPercent;
+
+    @Value("${recipe.grpc.outlier-detection.failure-percentage-threshold:50}")
+    private int failurePercentageThreshold;
+
+    @Value("${recipe.grpc.outlier-detection.minimum-hosts:2}")
+    private int outlierDetectionMinimumHosts;
+
+    @Value("${recipe.grpc.outlier-detection.request-volume:20}")
+    private int outlierDetectionRequestVolume;
+
+    @Value("${recipe.grpc.hedging.max-attempts:2}")
+    private int hedgingMaxAttempts;
+
+    @Value("${recipe.grpc.hedging.get-recipe-delay:PT0.05S}")
+    private Duration getRecipeHedgingDelay;
+
+    @Value("${recipe.grpc.hedging.list-recipes-delay:PT1S}")
+    private Duration listRecipesHedgingDelay;
+
+    /**
+     * Balancing across all resolved domain instances, with gRPC health checks and outlier ejection, hedged
+     * GetRecipe/ListRecipes calls and per-instance attempt metrics (see {@link GrpcEndpointMetrics}).
+     * Hedges and retries are throttled channel-wide once too many of them fail.
+     */
+    @Bean
+    public GrpcChannelConfigurer recipeServiceChannelConfigurer(MeterRegistry meterRegistry) {
+        Map<String, Object> serviceConfig = new LinkedHashMap<>();
+        serviceConfig.put("loadBalancingConfig", List.of(loadBalancingConfig()));
+        if (healthCheckEnabled) {
+            // The empty service name checks the server as a whole
+            serviceConfig.put("healthCheckConfig", Map.of("serviceName", ""));
+        }
+        serviceConfig.put("methodConfig", List.of(
+                hedgedMethod(RecipeServiceGrpc.getGetRecipeMethod().getBareMethodName(), getRecipeHedgingDelay),
+                hedgedMethod(RecipeServiceGrpc.getListRecipesMethod().getBareMethodName(), listRecipesHedgingDelay)));
+        serviceConfig.put("retryThrottling", Map.of("maxTokens", 10.0, "tokenRatio", 0.1));
+        return (channelBuilder, name) -> channelBuilder
+                .defaultServiceConfig(serviceConfig)
+                .enableRetry()
+                .intercept(new GrpcEndpointMetrics(meterRegistry));
+    }
+
+    private Map<String, Object> loadBalancingConfig() {
+        Map<String, Object> policy = Map.of(loadBalancingPolicy, Map.of());
+        if (!outlierDetectionEnabled) {
+            return policy;
+        }
+        // Ejects an instance for a while when its share of failed calls stands out
+        return Map.of("outlier_detection_experimental", Map.of(
+                "interval", seconds(outlierDetectionInterval),
+                "baseEjectionTime", seconds(baseEjectionTime),
+                "maxEjectionPercent", (double) maxEjectionPercent,
+                "failurePercentageEjection", Map.of(
+                        "threshold", (double) failurePercentageThreshold,
+                        "minimumHosts", (double) outlierDetectionMinimumHosts,
+                        "requestVolume", (double) outlierDetectionRequestVolume),
+                "childPolicy", List.of(policy)));
+    }
+
+    // Sends another attempt (to the next instance) when the previous one has not answered within the delay
+    private Map<String, Object> hedgedMethod(String method, Duration hedgingDelay) {
+        return Map.of(
+                "name", List.of(Map.of("service", RecipeServiceGrpc.SERVICE_NAME, "method", method)),
+                "hedgingPolicy", Map.of(
+                        "maxAttempts", (double) hedgingMaxAttempts,
+                        "hedgingDelay", seconds(hedgingDelay),
+                        "nonFatalStatusCodes", List.of("UNAVAILABLE")));
+    }
+
+    // Service config durations are strings in plain decimal seconds, e.g. "0.05s" (never "5.0E-4s")
+    static String seconds(Duration duration) {
+        return BigDecimal.valueOf(duration.toNanos(), 9).stripTrailingZeros().toPlainString() + "s";
+    }
+
+    /**
+     * With {@code spring.threads.virtual.enabled=true} gRPC client callbacks (future completion,
+     * cache backfill) run on virtual threads instead of the channel's default cached thread pool.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ExecutorService grpcClientExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public GrpcChannelConfigurer virtualThreadGrpcChannelConfigurer(ExecutorService grpcClientExecutor) {
+        return (channelBuilder, name) -> channelBuilder.executor(grpcClientExecutor);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.gateway.config;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every attempt of an RPC, hedged ones included, by the domain instance it went to:
+ * {@code recipe.grpc.client.attempts}, tagged with method, endpoint and status. The per-call
+ * {@code grpc.client} metrics only show the winning attempt, so a slow instance hides behind
+ * balancing and hedging there.
+ */
+class GrpcEndpointMetrics implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    GrpcEndpointMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        String methodName = method.getBareMethodName();
+        return next.newCall(method, callOptions.withStreamTracerFactory(new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                return new AttemptTracer(methodName);
+            }
+        }));
+    }
+
+    private final class AttemptTracer extends ClientStreamTracer {
+
+        private final String method;
+        private final long start = System.nanoTime();
+        // Attempts that never got a transport (no instance ready, deadline hit first) stay "none"
+        private volatile String endpoint = "none";
+
+        private AttemptTracer(String method) {
+            this.method = method;
+        }
+
+        @Override
+        public void streamCreated(Attributes transportAttrs, Metadata headers) {
+            SocketAddress remote = transportAttrs.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+            if (remote instanceof InetSocketAddress address) {
+                endpoint = address.getHostString() + ':' + address.getPort();
+            } else if (remote != null) {
+                endpoint = remote.toString();
+            }
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            Timer.builder("recipe.grpc.client.attempts")
+                    .description("Latency of individual gRPC attempts per domain instance")
+                    .tag("method", method)
+                    .tag("endpoint", endpoint)
+                    .tag("status", status.getCode().name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.example.gateway.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -20,9 +30,43 @@ public class RabbitMQConfig {
     public static final String recipePostRequestRoutingKey = "recipe.post";
     public static final String recipePutRequestRoutingKey = "recipe.put";
     public static final String recipeDeleteRequestRoutingKey = "recipe.delete";
+    public static final String cacheInvalidationRoutingKey = "gateway.cache.invalidate";
 
     public static final String directExchangeName = "recipeExchange";
 
+    // Content type of RecipeProto.RecipeCommand messages; anything else is read as a legacy JSON/raw message
+    public static final String recipeCommandContentType = "application/x-protobuf";
+    public static final int recipeCommandVersion = 1;
+    // Epoch millis at which the publisher handed the command to the broker, for queue dwell time on the consumer
+    public static final String recipeCommandPublishedAtHeader = "x-published-at";
+
+    // Partitioned command stream: every write for a recipe goes to the same queue, so it is applied in order
+    public static final String recipeCommandExchangeName = "recipeCommandExchange";
+    public static final String recipeCommandQueuePrefix = "recipeCommandQueue.";
+    public static final String recipeCommandRoutingKeyPrefix = "recipe.command.";
+    // Where the domain dead-letters recipe commands it cannot apply (declared by the domain)
+    public static final String recipeDeadLetterExchangeName = "recipeDeadLetterExchange";
+
+    // Committed-write events from the domain (RecipeProto.RecipeEvent). All gateway instances share one
+    // single-active-consumer queue, so events are applied to the shared caches by one consumer, in order.
+    public static final String recipeEventExchangeName = "recipeEventExchange";
+    public static final String recipeEventCacheQueueName = "recipeEventCacheQueue";
+
+    /**
+     * Partition of a recipe's commands. Must match the domain's implementation, since both publish.
+     */
+    public static int recipeCommandPartition(String recipeId, int partitions) {
+        return Math.floorMod(recipeId.toLowerCase(Locale.ROOT).hashCode(), partitions);
+    }
+
+    public static String recipeCommandRoutingKey(int partition) {
+        return recipeCommandRoutingKeyPrefix + partition;
+    }
+
+    public static String recipeCommandQueueName(int partition) {
+        return recipeCommandQueuePrefix + partition;
+    }
+
     @Bean
     public MessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -33,6 +77,45 @@ public class RabbitMQConfig {
         return new DirectExchange(directExchangeName);
     }
 
+    @Bean
+    public DirectExchange recipeCommandExchange() {
+        return new DirectExchange(recipeCommandExchangeName);
+    }
+
+    @Bean
+    public FanoutExchange recipeEventExchange() {
+        return new FanoutExchange(recipeEventExchangeName);
+    }
+
+    @Bean("recipeEventCacheQueue")
+    public Queue recipeEventCacheQueue() {
+        return QueueBuilder.durable(recipeEventCacheQueueName)
+                .singleActiveConsumer()
+                .build();
+    }
+
+    @Bean
+    public Binding recipeEventCacheBinding(@Qualifier("recipeEventCacheQueue") Queue recipeEventCacheQueue, FanoutExchange recipeEventExchange) {
+        return BindingBuilder.bind(recipeEventCacheQueue).to(recipeEventExchange);
+    }
+
+    // Declared with the same arguments as in the domain service, which consumes them
+    @Bean
+    public Declarables recipeCommandPartitions(@Qualifier("recipeCommandExchange") DirectExchange recipeCommandExchange,
+                                               @Value("${recipe.commands.partitions:4}") int partitions) {
+        List<Declarable> declarables = new ArrayList<>(partitions * 2);
+        for (int partition = 0; partition < partitions; partition++) {
+            Queue queue = QueueBuilder.durable(recipeCommandQueueName(partition))
+                    .singleActiveConsumer()
+                    .deadLetterExchange(recipeDeadLetterExchangeName)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(recipeCommandExchange).with(recipeCommandRoutingKey(partition)));
+        }
+        return new Declarables(declarables);
+    }
+
+    // The legacy queues keep their original arguments; dead-lettering for them is a broker policy (see the domain)
     @Bean("recipePostRequestQueue")
     public Queue recipePostRequestQueue() {
         return new Queue(recipePostRequestQueueName, true);
@@ -48,18 +131,29 @@ public class RabbitMQConfig {
         return new Queue(recipeDeleteRequestQueueName, true);
     }
 
+    // One auto-delete queue per gateway instance, so every instance sees every invalidation
+    @Bean("cacheInvalidationQueue")
+    public Queue cacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
     @Bean
-    public Binding postRequestBinding(@Qualifier("recipePostRequestQueue") Queue recipePostRequestQueue, DirectExchange exchange) {
+    public Binding postRequestBinding(@Qualifier("recipePostRequestQueue") Queue recipePostRequestQueue, @Qualifier("exchange") DirectExchange exchange) {
         return BindingBuilder.bind(recipePostRequestQueue).to(exchange).with(recipePostRequestRoutingKey);
     }
 
     @Bean
-    public Binding putRequestBinding(@Qualifier("recipePutRequestQueue") Queue recipePutRequestQueue, DirectExchange exchange) {
+    public Binding putRequestBinding(@Qualifier("recipePutRequestQueue") Queue recipePutRequestQueue, @Qualifier("exchange") DirectExchange exchange) {
         return BindingBuilder.bind(recipePutRequestQueue).to(exchange).with(recipePutRequestRoutingKey);
     }
 
     @Bean
-    public Binding deleteRequestBinding(@Qualifier("recipeDeleteRequestQueue") Queue recipeDeleteRequestQueue, DirectExchange exchange) {
+    public Binding deleteRequestBinding(@Qualifier("recipeDeleteRequestQueue") Queue recipeDeleteRequestQueue, @Qualifier("exchange") DirectExchange exchange) {
         return BindingBuilder.bind(recipeDeleteRequestQueue).to(exchange).with(recipeDeleteRequestRoutingKey);
     }
+
+    @Bean
+    public Binding cacheInvalidationBinding(@Qualifier("cacheInvalidationQueue") Queue cacheInvalidationQueue, @Qualifier("exchange") DirectExchange exchange) {
+        return BindingBuilder.bind(cacheInvalidationQueue).to(exchange).with(cacheInvalidationRoutingKey);
+    }
 }
@@ -1,15 +1,27 @@
 package com.example.gateway.config;
 
+import com.example.gateway.cache.CacheInvalidationPublisher;
+import com.example.gateway.cache.CommittedWrites;
+import com.example.gateway.cache.ProtobufRecipeRedisSerializer;
+import com.example.gateway.cache.RecipeCatalogCache;
+import com.example.gateway.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.NullValue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import java.time.Duration;
 
@@ -23,6 +35,49 @@ public class RedisConfig {
     @Value("${spring.data.redis.port}")
     private int redisPort;
 
+    @Value("${cache.near.maximum-size:10000}")
+    private long nearCacheMaximumSize;
+
+    @Value("${cache.near.ttl:PT1M}")
+    private Duration nearCacheTtl;
+
+    // Recipes by id are written by committed events; the TTL is the safety net should one still be lost.
+    // Tombstones only need to outlast a cache-aside load that started before the delete
+    @Value("${cache.recipe-by-id.ttl:PT10M}")
+    private Duration recipeByIdTtl;
+
+    @Value("${cache.recipe-by-id.tombstone-ttl:PT1M}")
+    private Duration recipeByIdTombstoneTtl;
+
+    @Value("${recipe.consistency.token-ttl:PT5M}")
+    private Duration consistencyTokenTtl;
+
+    @Value("${recipe.consistency.max-wait:PT1S}")
+    private Duration consistencyMaxWait;
+
+    @Value("${recipe.consistency.poll-interval:PT0.02S}")
+    private Duration consistencyPollInterval;
+
+    @Value("${cache.catalog.ttl:PT10M}")
+    private Duration catalogTtl;
+
+    @Value("${cache.catalog.load-grace:PT10S}")
+    private Duration catalogLoadGrace;
+
+    @Value("${cache.catalog.early-refresh-beta:1.0}")
+    private double catalogEarlyRefreshBeta;
+
+    // Value format per cache: "protobuf" (RecipeProto wire format) or "json"
+    @Value("${cache.serializer.recipe-by-id:protobuf}")
+    private String recipeByIdSerializer;
+
+    @Value("${cache.serializer.all-recipes:protobuf}")
+    private String allRecipesSerializer;
+
+    @Value("${cache.serializer.compression-threshold:1024}")
+    private int compressionThreshold;
+
+    // Redis hash holding the full recipe list, see RecipeCatalogCache
     public static final String REDIS_ALL_RECIPES_CACHE_KEY = "allRecipes";
     public static final String REDIS_RECIPE_BY_ID_CACHE_KEY = "recipeById";
 
@@ -36,15 +91,70 @@ public class RedisConfig {
     }
 
     @Bean
-    public RedisCacheManager cacheManager(LettuceConnectionFactory redisConnectionFactory) {
+    public CacheInvalidationPublisher cacheInvalidationPublisher(RabbitTemplate rabbitTemplate) {
+        return new CacheInvalidationPublisher(rabbitTemplate);
+    }
+
+    /**
+     * Redis stays the shared L2; each gateway keeps a bounded in-process L1 in front of it
+     * whose TTL caps staleness should an invalidation message be lost.
+     */
+    @Bean
+    public TwoLevelCacheManager cacheManager(LettuceConnectionFactory redisConnectionFactory,
+                                             CacheInvalidationPublisher cacheInvalidationPublisher,
+                                             MeterRegistry meterRegistry,
+                                             ObservationRegistry observationRegistry) {
         RedisCacheConfiguration cacheConfig = defaultCacheConfig(Duration.ofMinutes(10))
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(redisConnectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
                 .cacheDefaults(cacheConfig)
-                .withCacheConfiguration(REDIS_ALL_RECIPES_CACHE_KEY, defaultCacheConfig(Duration.ofMinutes(10)))
-                .withCacheConfiguration(REDIS_RECIPE_BY_ID_CACHE_KEY, defaultCacheConfig(Duration.ofMinutes(10)))
+                .withCacheConfiguration(REDIS_RECIPE_BY_ID_CACHE_KEY, defaultCacheConfig(Duration.ofMinutes(10))
+                        .entryTtl((key, value) -> value == null || value instanceof NullValue ? recipeByIdTombstoneTtl : recipeByIdTtl)
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                                valueSerializer(recipeByIdSerializer))))
+                .enableStatistics()
                 .build();
+        redisCacheManager.initializeCaches();
+
+        // Raw byte template for multi-key reads/writes; keys and values are encoded by each cache's own serializers
+        RedisTemplate<byte[], byte[]> bulkTemplate = new RedisTemplate<>();
+        bulkTemplate.setConnectionFactory(redisConnectionFactory);
+        bulkTemplate.setEnableDefaultSerializer(false);
+        bulkTemplate.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager, bulkTemplate, cacheInvalidationPublisher, meterRegistry,
+                observationRegistry, nearCacheMaximumSize, nearCacheTtl);
+    }
+
+    @Bean
+    public RecipeCatalogCache recipeCatalogCache(LettuceConnectionFactory redisConnectionFactory,
+                                                 MeterRegistry meterRegistry,
+                                                 ObservationRegistry observationRegistry) {
+        RedisTemplate<String, byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+
+        return new RecipeCatalogCache(redisTemplate, valueSerializer(allRecipesSerializer),
+                catalogTtl, catalogLoadGrace, catalogEarlyRefreshBeta, meterRegistry, observationRegistry);
+    }
+
+    @Bean
+    public CommittedWrites committedWrites(LettuceConnectionFactory redisConnectionFactory) {
+        return new CommittedWrites(new StringRedisTemplate(redisConnectionFactory),
+                consistencyTokenTtl, consistencyMaxWait, consistencyPollInterval);
+    }
+
+    private RedisSerializer<Object> valueSerializer(String format) {
+        return switch (format) {
+            case "protobuf" -> new ProtobufRecipeRedisSerializer(compressionThreshold);
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            default -> throw new IllegalStateException("Unknown cache serializer '" + format + "'. Use 'protobuf' or 'json'.");
+        };
     }
 
     private RedisCacheConfiguration defaultCacheConfig(Duration ttl) {
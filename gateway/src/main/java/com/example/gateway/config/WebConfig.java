@@ -0,0 +1,18 @@
+package com.example.gateway.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+
+@Configuration
+public class WebConfig {
+
+    /**
+     * Writes protobuf messages as {@code application/x-protobuf}, for clients that ask for recipes in the
+     * domain's wire format instead of JSON.
+     */
+    @Bean
+    public ProtobufHttpMessageConverter protobufHttpMessageConverter() {
+        return new ProtobufHttpMessageConverter();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.gateway.mapper;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.gateway.api.dto.RecipeRequestDTO;
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import com.example.gateway.api.dto.RecipeSearchDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain field-by-field mapping between the gRPC messages and the REST DTOs,
+ * used instead of reflective mapping on the request hot path.
+ */
+public final class RecipeMapper {
+
+    private RecipeMapper() {
+    }
+
+    public static RecipeResponseDTO toResponse(RecipeProto.Recipe recipe) {
+        return new RecipeResponseDTO(recipe.getId(), recipe.getName(), recipe.getIngredients(), recipe.getCookingTime(),
+                recipe.getVersion());
+    }
+
+    public static List<RecipeResponseDTO> toResponses(List<RecipeProto.Recipe> recipes) {
+        List<RecipeResponseDTO> result = new ArrayList<>(recipes.size());
+        for (RecipeProto.Recipe recipe : recipes) {
+            result.add(toResponse(recipe));
+        }
+        return result;
+    }
+
+    public static RecipeProto.Recipe toProto(RecipeResponseDTO recipe) {
+        return toProto(recipe.getId(), recipe.getName(), recipe.getIngredients(), recipe.getCookingTime())
+                .setVersion(recipe.getVersion())
+                .build();
+    }
+
+    public static RecipeProto.RecipeListResponse toProto(List<RecipeResponseDTO> recipes) {
+        RecipeProto.RecipeListResponse.Builder builder = RecipeProto.RecipeListResponse.newBuilder();
+        for (RecipeResponseDTO recipe : recipes) {
+            builder.addRecipes(toProto(recipe));
+        }
+        return builder.build();
+    }
+
+    public static RecipeProto.RecipeSearchRequest toProto(RecipeSearchDTO search) {
+        RecipeProto.RecipeSearchRequest.Builder builder = RecipeProto.RecipeSearchRequest.newBuilder()
+                .setLimit(search.getLimit());
+        if (search.getName() != null) {
+            builder.setNamePrefix(search.getName());
+        }
+        if (search.getQ() != null) {
+            builder.setText(search.getQ());
+        }
+        if (search.getIngredient() != null) {
+            builder.addAllIngredients(search.getIngredient());
+        }
+        if (search.getMinCookingTime() != null) {
+            builder.setMinCookingTime(search.getMinCookingTime());
+        }
+        if (search.getMaxCookingTime() != null) {
+            builder.setMaxCookingTime(search.getMaxCookingTime());
+        }
+        if (search.getAfter() != null) {
+            builder.setAfter(search.getAfter());
+        }
+        return builder.build();
+    }
+
+    public static RecipeProto.Recipe toProto(RecipeRequestDTO recipe) {
+        return toProto(recipe.getId(), recipe.getName(), recipe.getIngredients(), recipe.getCookingTime()).build();
+    }
+
+    // Protobuf string fields reject null, so absent values are left at their default ("")
+    private static RecipeProto.Recipe.Builder toProto(String id, String name, String ingredients, int cookingTime) {
+        RecipeProto.Recipe.Builder builder = RecipeProto.Recipe.newBuilder().setCookingTime(cookingTime);
+        if (id != null) {
+            builder.setId(id);
+        }
+        if (name != null) {
+            builder.setName(name);
+        }
+        if (ingredients != null) {
+            builder.setIngredients(ingredients);
+        }
+        return builder;
+    }
+}
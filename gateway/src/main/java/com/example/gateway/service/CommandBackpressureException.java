@@ -0,0 +1,11 @@
+package com.example.gateway.service;
+
+/**
+ * Too many recipe commands are waiting for broker confirms; the caller should retry later.
+ */
+public class CommandBackpressureException extends RuntimeException {
+
+    public CommandBackpressureException(int maxOutstanding) {
+        super("Too many unconfirmed recipe commands (limit " + maxOutstanding + ")");
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.gateway.service;
+
+/**
+ * A recipe command was not accepted by the broker: nacked, unroutable, or not confirmed in time.
+ */
+public class CommandPublishException extends RuntimeException {
+
+    public CommandPublishException(String message) {
+        super(message);
+    }
+
+    public CommandPublishException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
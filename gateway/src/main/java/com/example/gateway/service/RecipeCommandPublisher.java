@@ -0,0 +1,131 @@
+package com.example.gateway.service;
+
+import com.example.gateway.config.RabbitMQConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes recipe commands with asynchronous publisher confirms. Sends are pipelined: each one
+ * returns a future completed by the broker's confirm (which the broker acks in batches with the
+ * {@code multiple} flag), so requests never wait on each other's round trip.
+ * <p>
+ * At most {@code max-outstanding} commands may be unconfirmed at once. When the window stays full
+ * for {@code acquire-timeout}, the publish is refused with {@link CommandBackpressureException}
+ * instead of queueing more work in memory.
+ */
+@Slf4j
+@Component
+public class RecipeCommandPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final int maxOutstanding;
+    private final Semaphore window;
+    private final Duration acquireTimeout;
+    private final Duration confirmTimeout;
+
+    private final Timer confirmLatency;
+    private final Counter acked;
+    private final Counter nacked;
+    private final Counter returned;
+    private final Counter timedOut;
+    private final Counter rejected;
+
+    public RecipeCommandPublisher(RabbitTemplate rabbitTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${recipe.commands.publish.max-outstanding:1024}") int maxOutstanding,
+                                  @Value("${recipe.commands.publish.acquire-timeout:PT0.05S}") Duration acquireTimeout,
+                                  @Value("${recipe.commands.publish.confirm-timeout:PT5S}") Duration confirmTimeout) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.maxOutstanding = maxOutstanding;
+        this.window = new Semaphore(maxOutstanding);
+        this.acquireTimeout = acquireTimeout;
+        this.confirmTimeout = confirmTimeout;
+
+        this.confirmLatency = Timer.builder("recipe.commands.confirm.latency")
+                .description("Time from publishing a recipe command to the broker's confirm")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.acked = publishCounter(meterRegistry, "ack");
+        this.nacked = publishCounter(meterRegistry, "nack");
+        this.returned = publishCounter(meterRegistry, "returned");
+        this.timedOut = publishCounter(meterRegistry, "timeout");
+        this.rejected = publishCounter(meterRegistry, "backpressure");
+        Gauge.builder("recipe.commands.publish.outstanding", window, w -> maxOutstanding - w.availablePermits())
+                .description("Recipe commands published but not yet confirmed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the command and returns a future that completes once the broker has confirmed it,
+     * or fails with {@link CommandPublishException} if it was nacked, returned or never confirmed.
+     */
+    public CompletableFuture<Void> publish(String routingKey, Message message) {
+        if (!acquire()) {
+            rejected.increment();
+            throw new CommandBackpressureException(maxOutstanding);
+        }
+        CorrelationData correlation = new CorrelationData();
+        message.getMessageProperties().setMessageId(correlation.getId());
+        message.getMessageProperties().setHeader(RabbitMQConfig.recipeCommandPublishedAtHeader, System.currentTimeMillis());
+        long start = System.nanoTime();
+        try {
+            rabbitTemplate.send(RabbitMQConfig.recipeCommandExchangeName, routingKey, message, correlation);
+        } catch (RuntimeException e) {
+            window.release();
+            throw e;
+        }
+        return correlation.getFuture()
+                .orTimeout(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((confirm, error) -> {
+                    window.release();
+                    confirmLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (error != null) {
+                        timedOut.increment();
+                        String reason = error instanceof TimeoutException ? "not confirmed within " + confirmTimeout : error.getMessage();
+                        throw new CommandPublishException("Recipe command " + correlation.getId() + " " + reason, error);
+                    }
+                    if (!confirm.isAck()) {
+                        nacked.increment();
+                        log.warn("Recipe command {} nacked by broker: {}", correlation.getId(), confirm.getReason());
+                        throw new CommandPublishException("Recipe command rejected by broker: " + confirm.getReason());
+                    }
+                    if (correlation.getReturned() != null) {
+                        returned.increment();
+                        log.warn("Recipe command {} was unroutable: {}", correlation.getId(), correlation.getReturned().getReplyText());
+                        throw new CommandPublishException("Recipe command could not be routed to a queue");
+                    }
+                    acked.increment();
+                    return null;
+                });
+    }
+
+    private boolean acquire() {
+        try {
+            return window.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Counter publishCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("recipe.commands.publish")
+                .description("Recipe command publishes by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -2,149 +2,473 @@ package com.example.gateway.service;
 
 import com.example.domain.grpc.RecipeProto;
 import com.example.domain.grpc.RecipeServiceGrpc;
+import com.example.gateway.api.dto.RecipeCatalogDTO;
+import com.example.gateway.api.dto.RecipeImportResultDTO;
+import com.example.gateway.api.dto.RecipePageDTO;
 import com.example.gateway.api.dto.RecipeRequestDTO;
 import com.example.gateway.api.dto.RecipeResponseDTO;
+import com.example.gateway.api.dto.RecipeSearchDTO;
+import com.example.gateway.cache.CommittedWrites;
+import com.example.gateway.cache.RecipeCatalogCache;
+import com.example.gateway.cache.SingleFlight;
+import com.example.gateway.cache.TwoLevelCache;
 import com.example.gateway.config.RabbitMQConfig;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.gateway.mapper.RecipeMapper;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
-import org.modelmapper.ModelMapper;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import static com.example.gateway.config.RedisConfig.REDIS_ALL_RECIPES_CACHE_KEY;
 import static com.example.gateway.config.RedisConfig.REDIS_RECIPE_BY_ID_CACHE_KEY;
 
 @Service
 @Slf4j
 public class RecipeService {
 
-    private final ModelMapper modelMapper = new ModelMapper();
+    // Unary reads go through the future stub so no servlet thread waits on the domain round trip;
+    // the blocking stub is only used for server streaming, which is paced by the HTTP response anyway
+    @GrpcClient("recipeService")
+    private RecipeServiceGrpc.RecipeServiceFutureStub recipeServiceFutureStub;
 
     @GrpcClient("recipeService")
     private RecipeServiceGrpc.RecipeServiceBlockingStub recipeServiceGrpc;
 
-    private final RabbitTemplate rabbitTemplate;
+    // Client streaming (bulk import) needs the async stub
+    @GrpcClient("recipeService")
+    private RecipeServiceGrpc.RecipeServiceStub recipeServiceStub;
+
+    @Value("${recipe.grpc.deadline.get-recipe:PT2S}")
+    private Duration getRecipeDeadline;
+
+    @Value("${recipe.grpc.deadline.get-recipes:PT2S}")
+    private Duration getRecipesDeadline;
+
+    @Value("${recipe.grpc.deadline.list-recipes:PT10S}")
+    private Duration listRecipesDeadline;
+
+    @Value("${recipe.grpc.deadline.list-recipes-page:PT2S}")
+    private Duration listRecipesPageDeadline;
+
+    @Value("${recipe.grpc.deadline.search-recipes:PT2S}")
+    private Duration searchRecipesDeadline;
+
+    @Value("${recipe.grpc.deadline.stream-recipes:PT10M}")
+    private Duration streamRecipesDeadline;
+
+    @Value("${recipe.grpc.deadline.import-recipes:PT30M}")
+    private Duration importRecipesDeadline;
+
+    @Value("${recipe.import.batch-size:1000}")
+    private int importBatchSize;
+
+    @Value("${recipe.multi-get.max-ids:100}")
+    private int multiGetMaxIds;
+
+    @Value("${recipe.commands.partitions:4}")
+    private int commandPartitions;
+
+    private final SingleFlight<String, RecipeResponseDTO> recipeLoads = new SingleFlight<>();
+
+    private final RecipeCommandPublisher commandPublisher;
     private final CacheManager cacheManager;
+    private final RecipeCatalogCache recipeCatalogCache;
+    private final CommittedWrites committedWrites;
 
-    public RecipeService(RabbitTemplate rabbitTemplate, CacheManager cacheManager) {
-        this.rabbitTemplate = rabbitTemplate;
+    public RecipeService(RecipeCommandPublisher commandPublisher,
+                         CacheManager cacheManager,
+                         RecipeCatalogCache recipeCatalogCache,
+                         CommittedWrites committedWrites) {
+        this.commandPublisher = commandPublisher;
         this.cacheManager = cacheManager;
+        this.recipeCatalogCache = recipeCatalogCache;
+        this.committedWrites = committedWrites;
+    }
+
+    /**
+     * With a {@code consistencyToken} from an earlier write, waits briefly for that write to reach the
+     * caches first; if it does not in time, the read bypasses the caches. The same holds for the other
+     * reads taking a token.
+     */
+    public CompletableFuture<RecipeCatalogDTO> getAllRecipes(String consistencyToken) {
+        return afterWrite(consistencyToken,
+                fresh -> recipeCatalogCache.getAll(this::listRecipes, fresh),
+                () -> listRecipes().thenApply(RecipeCatalogDTO::of));
     }
 
-    @Cacheable(REDIS_ALL_RECIPES_CACHE_KEY)
-    public List<RecipeResponseDTO> getAllRecipes() {
+    /**
+     * Version of the cached recipe list, read without the list itself; {@code null} when none is cached.
+     */
+    public String getCachedCatalogVersion() {
+        return recipeCatalogCache.currentVersion();
+    }
+
+    private CompletableFuture<List<RecipeResponseDTO>> listRecipes() {
         log.info("Fetching all recipes via gRPC...");
-        var response = recipeServiceGrpc.listRecipes(RecipeProto.Empty.newBuilder().build());
-        return response.getRecipesList()
-                .stream()
-                .map(recipe -> modelMapper.map(recipe, RecipeResponseDTO.class))
-                .collect(Collectors.toList());
+        var call = recipeServiceFutureStub
+                .withDeadlineAfter(listRecipesDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .listRecipes(RecipeProto.Empty.newBuilder().build());
+        return toCompletableFuture(call).thenApply(response -> RecipeMapper.toResponses(response.getRecipesList()));
     }
 
-    @Cacheable(value = REDIS_RECIPE_BY_ID_CACHE_KEY, key = "#id")
-    public RecipeResponseDTO getRecipeById(String id) {
-        log.info("Fetching recipe by ID via gRPC: {}", id);
-        var request = RecipeProto.RecipeRequest.newBuilder().setId(id).build();
-        var recipe = recipeServiceGrpc.getRecipe(request);
-        return modelMapper.map(recipe.getRecipe(), RecipeResponseDTO.class);
+    public CompletableFuture<RecipePageDTO> getRecipesPage(int limit, String after) {
+        log.info("Fetching recipes page via gRPC: limit={}, after='{}'", limit, after);
+        var request = RecipeProto.RecipePageRequest.newBuilder()
+                .setLimit(limit)
+                .setAfter(after == null ? "" : after)
+                .build();
+        var call = recipeServiceFutureStub
+                .withDeadlineAfter(listRecipesPageDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .listRecipesPage(request);
+        return toCompletableFuture(call).thenApply(RecipeService::toPage);
     }
 
-    public void saveNewRecipe(RecipeRequestDTO recipeRequestDTO) {
-        try {
-            if (recipeRequestDTO.getId() == null || recipeRequestDTO.getId().isBlank()) {
-                String generatedId = UUID.randomUUID().toString();
-                recipeRequestDTO.setId(generatedId);
-                log.info("Generated new ID for recipe: {}", generatedId);
-            }
+    public CompletableFuture<RecipePageDTO> searchRecipes(RecipeSearchDTO search) {
+        log.info("Searching recipes via gRPC: {}", search);
+        var request = RecipeMapper.toProto(search);
+        var call = recipeServiceFutureStub
+                .withDeadlineAfter(searchRecipesDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .searchRecipes(request);
+        return toCompletableFuture(call).thenApply(RecipeService::toPage);
+    }
 
-            byte[] message = new ObjectMapper().writeValueAsBytes(recipeRequestDTO);
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.directExchangeName,
-                    RabbitMQConfig.recipePostRequestRoutingKey,
-                    message
-            );
-
-            RecipeResponseDTO recipeResponseDTO = modelMapper.map(recipeRequestDTO, RecipeResponseDTO.class);
-            saveToCache(recipeResponseDTO);
-
-            deleteFromCache(null);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize RecipeRequestDTO to JSON", e);
-            throw new RuntimeException("Serialization error", e);
-        } catch (Exception e) {
-            log.error("Error while sending message to RabbitMQ", e);
-            throw e;
+    public void streamRecipes(String after, Consumer<RecipeResponseDTO> consumer) {
+        log.info("Streaming recipes via gRPC after '{}'", after);
+        var request = RecipeProto.RecipePageRequest.newBuilder()
+                .setAfter(after == null ? "" : after)
+                .build();
+        // The blocking iterator pulls one message at a time, so the domain only sends as fast as we consume.
+        // Closing the context cancels the RPC if the consumer fails midway (e.g. the HTTP client went away).
+        try (Context.CancellableContext context = Context.current().withCancellation()) {
+            context.run(() -> {
+                Iterator<RecipeProto.Recipe> recipes = recipeServiceGrpc
+                        .withDeadlineAfter(streamRecipesDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                        .streamRecipes(request);
+                while (recipes.hasNext()) {
+                    consumer.accept(RecipeMapper.toResponse(recipes.next()));
+                }
+            });
         }
     }
 
-    public void updateRecipe(String id, RecipeRequestDTO recipeRequestDTO) {
+    /**
+     * Ships recipes to the domain service in batches over one client-streaming call. A batch is only
+     * sent while the call is ready, so the source is read no faster than the domain writes it.
+     * Recipes are written directly, bypassing the command queues; the domain publishes a committed event
+     * for each recipe inserted, which updates the caches like any other write.
+     */
+    public RecipeImportResultDTO importRecipes(Iterator<RecipeRequestDTO> recipes) {
+        log.info("Importing recipes via gRPC in batches of {}", importBatchSize);
+        CompletableFuture<RecipeProto.ImportSummary> summary = new CompletableFuture<>();
+        Object readyLock = new Object();
+        var call = (ClientCallStreamObserver<RecipeProto.RecipeBatch>) recipeServiceStub
+                .withDeadlineAfter(importRecipesDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .importRecipes(new ClientResponseObserver<RecipeProto.RecipeBatch, RecipeProto.ImportSummary>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<RecipeProto.RecipeBatch> requestStream) {
+                        requestStream.setOnReadyHandler(() -> signal(readyLock));
+                    }
+
+                    @Override
+                    public void onNext(RecipeProto.ImportSummary value) {
+                        summary.complete(value);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        summary.completeExceptionally(t);
+                        signal(readyLock);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
         try {
-            recipeRequestDTO.setId(id);
-            byte[] message = new ObjectMapper().writeValueAsBytes(recipeRequestDTO);
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.directExchangeName,
-                    RabbitMQConfig.recipePutRequestRoutingKey,
-                    message
-            );
-
-            RecipeResponseDTO recipeResponseDTO = modelMapper.map(recipeRequestDTO, RecipeResponseDTO.class);
-            saveToCache(recipeResponseDTO);
-
-            deleteFromCache(null);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize RecipeRequestDTO to JSON", e);
-            throw new RuntimeException("Serialization error", e);
-        } catch (Exception e) {
-            log.error("Error while sending update request to RabbitMQ for ID: {}", id, e);
+            RecipeProto.RecipeBatch.Builder batch = RecipeProto.RecipeBatch.newBuilder();
+            while (recipes.hasNext()) {
+                batch.addRecipes(RecipeMapper.toProto(recipes.next()));
+                if (batch.getRecipesCount() >= importBatchSize) {
+                    awaitReady(call, summary, readyLock);
+                    call.onNext(batch.build());
+                    batch = RecipeProto.RecipeBatch.newBuilder();
+                }
+            }
+            if (batch.getRecipesCount() > 0) {
+                awaitReady(call, summary, readyLock);
+                call.onNext(batch.build());
+            }
+            call.onCompleted();
+        } catch (RuntimeException e) {
+            call.cancel("Recipe import aborted", e);
             throw e;
         }
+
+        RecipeProto.ImportSummary result = join(summary);
+        log.info("Recipe import finished: {} received, {} inserted", result.getReceived(), result.getInserted());
+        return new RecipeImportResultDTO(result.getReceived(), result.getInserted());
     }
 
-    public void deleteRecipe(String id) {
-        try {
-            byte[] message = id.getBytes();
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.directExchangeName,
-                    RabbitMQConfig.recipeDeleteRequestRoutingKey,
-                    message
-            );
-
-            deleteFromCache(id);
-            deleteFromCache(null);
-        } catch (Exception e) {
-            log.error("Error while sending delete request to RabbitMQ for ID: {}", id, e);
-            throw e;
+    /**
+     * Cache-aside read of one recipe; concurrent misses for the same ID share a single gRPC call.
+     * A cached tombstone answers NOT_FOUND without asking the domain service.
+     */
+    public CompletableFuture<RecipeResponseDTO> getRecipeById(String id, String consistencyToken) {
+        return afterWrite(consistencyToken, fresh -> getCachedRecipeById(id, fresh), () -> fetchRecipeById(id));
+    }
+
+    private CompletableFuture<RecipeResponseDTO> getCachedRecipeById(String id, boolean fresh) {
+        Cache.ValueWrapper cached = fresh ? cachedRecipes().getFresh(id) : cachedRecipes().get(id);
+        if (cached != null) {
+            if (cached.get() instanceof RecipeResponseDTO recipe) {
+                return CompletableFuture.completedFuture(recipe);
+            }
+            return CompletableFuture.failedFuture(
+                    Status.NOT_FOUND.withDescription("Recipe " + id + " was deleted").asRuntimeException());
+        }
+        // A fresh read must not join a load that may have fetched the recipe before the write
+        Supplier<CompletableFuture<RecipeResponseDTO>> load = () -> fetchRecipeById(id).thenApply(recipe -> {
+            cacheIfAbsent(Map.of(id, recipe));
+            return recipe;
+        });
+        return fresh ? load.get() : recipeLoads.executeAsync(id, load);
+    }
+
+    private CompletableFuture<RecipeResponseDTO> fetchRecipeById(String id) {
+        log.info("Fetching recipe by ID via gRPC: {}", id);
+        var request = RecipeProto.RecipeRequest.newBuilder().setId(id).build();
+        var call = recipeServiceFutureStub
+                .withDeadlineAfter(getRecipeDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .getRecipe(request);
+        return toCompletableFuture(call).thenApply(response -> RecipeMapper.toResponse(response.getRecipe()));
+    }
+
+    /**
+     * Multi-get: all ids are looked up in both cache tiers at once, the misses are fetched with a single
+     * GetRecipes call and written back to the cache in one pipelined round trip.
+     * Recipes come back in the order of {@code ids}; unknown ids are left out.
+     */
+    public CompletableFuture<List<RecipeResponseDTO>> getRecipesByIds(List<String> ids, String consistencyToken) {
+        List<String> distinctIds = ids.stream().distinct().toList();
+        if (distinctIds.size() > multiGetMaxIds) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("At most " + multiGetMaxIds + " IDs per request")
+                    .asRuntimeException();
         }
+        return afterWrite(consistencyToken,
+                fresh -> getCachedRecipesByIds(distinctIds, fresh),
+                () -> fetchRecipesByIds(distinctIds).thenApply(loaded -> inOrder(distinctIds, loaded)));
     }
 
-    private void saveToCache(RecipeResponseDTO recipeResponseDTO) {
-        Cache cacheById = cacheManager.getCache(REDIS_RECIPE_BY_ID_CACHE_KEY);
-        if (cacheById != null) {
-            cacheById.put(recipeResponseDTO.getId(), recipeResponseDTO);
-            log.info("Saved recipe to cache with ID: {}", recipeResponseDTO.getId());
+    private CompletableFuture<List<RecipeResponseDTO>> getCachedRecipesByIds(List<String> ids, boolean fresh) {
+        // Tombstoned ids are in the cached map too (as null), so they are not fetched again
+        Map<String, Object> cached = cachedRecipes().getAll(ids, fresh);
+        List<String> misses = ids.stream().filter(id -> !cached.containsKey(id)).toList();
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(inOrder(ids, cached));
         }
+        return fetchRecipesByIds(misses).thenApply(loaded -> {
+            cacheIfAbsent(loaded);
+            Map<String, Object> recipes = new HashMap<>(cached);
+            recipes.putAll(loaded);
+            return inOrder(ids, recipes);
+        });
     }
 
-    private void deleteFromCache(String id) {
-        if (id == null) {
-            Cache allRecipesCache = cacheManager.getCache(REDIS_ALL_RECIPES_CACHE_KEY);
-            if (allRecipesCache != null) {
-                allRecipesCache.clear();
+    private CompletableFuture<Map<String, RecipeResponseDTO>> fetchRecipesByIds(List<String> ids) {
+        log.info("Fetching {} recipes by ID via gRPC", ids.size());
+        var request = RecipeProto.RecipeIdsRequest.newBuilder().addAllIds(ids).build();
+        var call = recipeServiceFutureStub
+                .withDeadlineAfter(getRecipesDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .getRecipes(request);
+        return toCompletableFuture(call).thenApply(response -> {
+            Map<String, RecipeResponseDTO> loaded = new HashMap<>();
+            for (RecipeProto.Recipe recipe : response.getRecipesList()) {
+                loaded.put(recipe.getId(), RecipeMapper.toResponse(recipe));
             }
-        } else {
-            Cache recipeByIdCache = cacheManager.getCache(REDIS_RECIPE_BY_ID_CACHE_KEY);
-            if (recipeByIdCache != null) {
-                recipeByIdCache.evictIfPresent(id);
+            return loaded;
+        });
+    }
+
+    /**
+     * Publishes the create command. The returned future completes once the broker has confirmed it,
+     * with a consistency token for reads that must see this write. The caches are not touched here:
+     * they only learn about the recipe from the domain's committed event.
+     */
+    public CompletableFuture<String> saveNewRecipe(RecipeRequestDTO recipeRequestDTO) {
+        if (recipeRequestDTO.getId() == null || recipeRequestDTO.getId().isBlank()) {
+            String generatedId = UUID.randomUUID().toString();
+            recipeRequestDTO.setId(generatedId);
+            log.info("Generated new ID for recipe: {}", generatedId);
+        }
+
+        return publishCommand(RecipeProto.RecipeCommand.newBuilder()
+                .setOp(RecipeProto.RecipeCommand.Op.CREATE)
+                .setId(recipeRequestDTO.getId())
+                .setRecipe(RecipeMapper.toProto(recipeRequestDTO).toBuilder().clearId()))
+                .whenComplete((token, error) -> {
+                    if (error != null) {
+                        log.error("Error while sending message to RabbitMQ", error);
+                    }
+                });
+    }
+
+    public CompletableFuture<String> updateRecipe(String id, RecipeRequestDTO recipeRequestDTO) {
+        recipeRequestDTO.setId(id);
+        return publishCommand(RecipeProto.RecipeCommand.newBuilder()
+                .setOp(RecipeProto.RecipeCommand.Op.UPDATE)
+                .setId(id)
+                .setRecipe(RecipeMapper.toProto(recipeRequestDTO).toBuilder().clearId()))
+                .whenComplete((token, error) -> {
+                    if (error != null) {
+                        log.error("Error while sending update request to RabbitMQ for ID: {}", id, error);
+                    }
+                });
+    }
+
+    public CompletableFuture<String> deleteRecipe(String id) {
+        return publishCommand(RecipeProto.RecipeCommand.newBuilder()
+                .setOp(RecipeProto.RecipeCommand.Op.DELETE)
+                .setId(id))
+                .whenComplete((token, error) -> {
+                    if (error != null) {
+                        log.error("Error while sending delete request to RabbitMQ for ID: {}", id, error);
+                    }
+                });
+    }
+
+    /**
+     * Sends the command as a protobuf envelope to its recipe's partition queue; the raw message
+     * skips the JSON converter entirely. Completes with the command id, which is the consistency token.
+     */
+    private CompletableFuture<String> publishCommand(RecipeProto.RecipeCommand.Builder command) {
+        int partition = RabbitMQConfig.recipeCommandPartition(command.getId(), commandPartitions);
+        String commandId = UUID.randomUUID().toString();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(RabbitMQConfig.recipeCommandContentType);
+        byte[] body = command
+                .setVersion(RabbitMQConfig.recipeCommandVersion)
+                .setTimestamp(System.currentTimeMillis())
+                .setCommandId(commandId)
+                .build()
+                .toByteArray();
+        return commandPublisher.publish(RabbitMQConfig.recipeCommandRoutingKey(partition), new Message(body, properties))
+                .thenApply(ignored -> commandId);
+    }
+
+    /**
+     * The event listener writes Redis before it records the token, but other instances only drop their
+     * L1 copy once the invalidation message reaches them. So once the token is there, the cached read runs
+     * {@code fresh}: from Redis only, without joining a load that may have started before the write.
+     */
+    private <T> CompletableFuture<T> afterWrite(String consistencyToken,
+                                                Function<Boolean, CompletableFuture<T>> cachedRead,
+                                                Supplier<CompletableFuture<T>> directRead) {
+        if (consistencyToken == null || consistencyToken.isBlank()) {
+            return cachedRead.apply(false);
+        }
+        return committedWrites.await(consistencyToken)
+                .thenCompose(applied -> applied ? cachedRead.apply(true) : directRead.get());
+    }
+
+    private TwoLevelCache cachedRecipes() {
+        return (TwoLevelCache) cacheManager.getCache(REDIS_RECIPE_BY_ID_CACHE_KEY);
+    }
+
+    // Loads never overwrite an entry, so they cannot undo a newer committed event or a tombstone
+    private void cacheIfAbsent(Map<String, RecipeResponseDTO> recipes) {
+        cachedRecipes().putAllIfAbsent(recipes);
+    }
+
+    private static List<RecipeResponseDTO> inOrder(List<String> ids, Map<String, ?> recipes) {
+        List<RecipeResponseDTO> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (recipes.get(id) instanceof RecipeResponseDTO recipe) {
+                result.add(recipe);
             }
         }
+        return result;
+    }
+
+    private static RecipePageDTO toPage(RecipeProto.RecipePageResponse response) {
+        List<RecipeResponseDTO> recipes = RecipeMapper.toResponses(response.getRecipesList());
+        String nextCursor = response.getNextCursor().isEmpty() ? null : response.getNextCursor();
+        return new RecipePageDTO(recipes, nextCursor);
+    }
+
+    private static void awaitReady(ClientCallStreamObserver<?> call, CompletableFuture<?> done, Object readyLock) {
+        synchronized (readyLock) {
+            while (!call.isReady() && !done.isDone()) {
+                try {
+                    readyLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting to send recipes");
+                }
+            }
+        }
+        if (done.isDone()) {
+            // The domain service finished the call early, which only happens on failure
+            join(done);
+        }
+    }
+
+    private static void signal(Object readyLock) {
+        synchronized (readyLock) {
+            readyLock.notifyAll();
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Futures.addCallback(listenableFuture, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
     }
 }
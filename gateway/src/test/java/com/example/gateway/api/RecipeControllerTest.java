@@ -0,0 +1,222 @@
+package com.example.gateway.api;
+
+import com.example.domain.grpc.RecipeProto;
+import com.example.gateway.api.dto.RecipeCatalogDTO;
+import com.example.gateway.api.dto.RecipeImportResultDTO;
+import com.example.gateway.api.dto.RecipeRequestDTO;
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import com.example.gateway.service.CommandBackpressureException;
+import com.example.gateway.service.RecipeService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RecipeControllerTest {
+
+    private final RecipeService recipeService = mock(RecipeService.class);
+    private final MockMvc mockMvc = MockMvcBuilders
+            .standaloneSetup(new RecipeController(recipeService, new ObjectMapper()))
+            .setMessageConverters(new StringHttpMessageConverter(), new ProtobufHttpMessageConverter(),
+                    new MappingJackson2HttpMessageConverter())
+            .build();
+
+    private static final RecipeResponseDTO PANCAKES = new RecipeResponseDTO("1", "Pancakes", "flour", 10, 7);
+    private static final RecipeCatalogDTO CATALOG = RecipeCatalogDTO.of(List.of(
+            PANCAKES, new RecipeResponseDTO("2", "Omelette", "eggs", 5, 4)));
+
+    @Test
+    void listCarriesTheCatalogVersionAsETag() throws Exception {
+        when(recipeService.getAllRecipes(null)).thenReturn(CompletableFuture.completedFuture(CATALOG));
+
+        perform(get("/api/v1/recipes"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-2\""))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(header().stringValues("Vary", "Accept"))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void revalidatesTheListAgainstTheCachedVersionOnly() throws Exception {
+        when(recipeService.getCachedCatalogVersion()).thenReturn("7-2");
+
+        perform(get("/api/v1/recipes").header("If-None-Match", "\"6-2\", W/\"7-2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7-2\""))
+                .andExpect(content().string(""));
+        verify(recipeService, never()).getAllRecipes(any());
+    }
+
+    @Test
+    void answersInFullWhenTheETagIsStale() throws Exception {
+        when(recipeService.getCachedCatalogVersion()).thenReturn("7-2");
+        when(recipeService.getAllRecipes(null)).thenReturn(CompletableFuture.completedFuture(CATALOG));
+
+        perform(get("/api/v1/recipes").header("If-None-Match", "\"6-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-2\""))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void aConsistencyTokenSkipsTheRevalidationShortcut() throws Exception {
+        when(recipeService.getAllRecipes("token")).thenReturn(CompletableFuture.completedFuture(CATALOG));
+
+        perform(get("/api/v1/recipes")
+                .header("If-None-Match", "\"7-2\"")
+                .header(RecipeController.CONSISTENCY_TOKEN_HEADER, "token"))
+                .andExpect(status().isNotModified());
+        verify(recipeService, never()).getCachedCatalogVersion();
+        verify(recipeService).getAllRecipes("token");
+    }
+
+    @Test
+    void servesProtobufWithItsOwnETagWhenPreferred() throws Exception {
+        when(recipeService.getCachedCatalogVersion()).thenReturn("7-2");
+        when(recipeService.getAllRecipes(null)).thenReturn(CompletableFuture.completedFuture(CATALOG));
+
+        // The JSON representation's ETag does not validate the protobuf one
+        MvcResult result = perform(get("/api/v1/recipes")
+                .header("Accept", "application/x-protobuf, application/json;q=0.5")
+                .header("If-None-Match", "\"7-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-2-pb\""))
+                .andExpect(content().contentTypeCompatibleWith("application/x-protobuf"))
+                .andReturn();
+        assertThat(RecipeProto.RecipeListResponse.parseFrom(result.getResponse().getContentAsByteArray()).getRecipesList())
+                .extracting(RecipeProto.Recipe::getName)
+                .containsExactly("Pancakes", "Omelette");
+
+        perform(get("/api/v1/recipes")
+                .header("Accept", "application/x-protobuf")
+                .header("If-None-Match", "\"7-2-pb\""))
+                .andExpect(status().isNotModified());
+        perform(get("/api/v1/recipes").header("Accept", "application/json, application/x-protobuf;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-2\""));
+    }
+
+    @Test
+    void recipeByIdIsConditionalOnItsVersion() throws Exception {
+        when(recipeService.getRecipeById(eq("1"), isNull())).thenReturn(CompletableFuture.completedFuture(PANCAKES));
+
+        perform(get("/api/v1/recipes/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(jsonPath("$.name").value("Pancakes"));
+        perform(get("/api/v1/recipes/1").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified());
+        perform(get("/api/v1/recipes/1").header("If-None-Match", "\"6\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void recipeWithoutAKnownVersionHasNoETag() throws Exception {
+        when(recipeService.getRecipeById(anyString(), isNull())).thenReturn(CompletableFuture.completedFuture(
+                new RecipeResponseDTO("3", "Crepes", "flour", 15, 0)));
+
+        perform(get("/api/v1/recipes/3"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    void importsNdjsonAndCsv() throws Exception {
+        List<RecipeRequestDTO> imported = importing();
+
+        mockMvc.perform(post("/api/v1/recipes/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"Pancakes\",\"ingredients\":\"flour\",\"cookingTime\":10}\n" +
+                                "{\"name\":\"Omelette\",\"ingredients\":\"eggs\",\"cookingTime\":5}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2));
+        mockMvc.perform(post("/api/v1/recipes/import")
+                        .contentType("text/csv")
+                        .content("name,ingredients,cookingTime\nCrepes,\"flour, milk\",15\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(1));
+
+        assertThat(imported).extracting(RecipeRequestDTO::getName).containsExactly("Pancakes", "Omelette", "Crepes");
+    }
+
+    @Test
+    void rejectsMalformedJsonWithBadRequest() throws Exception {
+        importing();
+
+        mockMvc.perform(post("/api/v1/recipes/import")
+                        .contentType("application/x-ndjson")
+                        .content("not json"))
+                .andExpect(status().isBadRequest());
+        // Only noticed once the first record has been sent on
+        mockMvc.perform(post("/api/v1/recipes/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"Pancakes\",\"cookingTime\":10}\n{\"name\":"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/recipes/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"Pancakes\",\"cookingTime\":\"soon\"}\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void refusesWritesWithServiceUnavailableWhileTheConfirmWindowIsFull() throws Exception {
+        when(recipeService.saveNewRecipe(any())).thenThrow(new CommandBackpressureException(1024));
+
+        mockMvc.perform(post("/api/v1/recipes")
+                        .contentType("application/json")
+                        .content("{\"name\":\"Pancakes\",\"ingredients\":\"flour\",\"cookingTime\":10}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    // Completes async handling, as the servlet container would once the returned future is done
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
+
+    // Makes the mocked service drain the upload the way the real one does, collecting what it read
+    private List<RecipeRequestDTO> importing() {
+        List<RecipeRequestDTO> imported = new ArrayList<>();
+        when(recipeService.importRecipes(any())).thenAnswer(invocation -> {
+            Iterator<RecipeRequestDTO> recipes = invocation.getArgument(0);
+            long received = 0;
+            while (recipes.hasNext()) {
+                imported.add(recipes.next());
+                received++;
+            }
+            return new RecipeImportResultDTO(received, received);
+        });
+        return imported;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.gateway.cache;
+
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProtobufRecipeRedisSerializerTest {
+
+    private final ProtobufRecipeRedisSerializer serializer = new ProtobufRecipeRedisSerializer(256);
+
+    @Test
+    void roundTripsARecipe() {
+        RecipeResponseDTO recipe = recipe("Pancakes", "flour, milk, eggs");
+
+        byte[] bytes = serializer.serialize(recipe);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0x01);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(recipe);
+    }
+
+    @Test
+    void roundTripsARecipeList() {
+        List<RecipeResponseDTO> recipes = List.of(recipe("Pancakes", "flour"), recipe("Omelette", "eggs"));
+
+        byte[] bytes = serializer.serialize(recipes);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0x02);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(recipes);
+    }
+
+    @Test
+    void compressesPayloadsAboveTheThreshold() {
+        List<RecipeResponseDTO> recipes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            recipes.add(recipe("Recipe " + i, "flour, milk, eggs, sugar, butter"));
+        }
+
+        byte[] bytes = serializer.serialize(recipes);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0x82);
+        assertThat(bytes.length).isLessThan(new ProtobufRecipeRedisSerializer(Integer.MAX_VALUE).serialize(recipes).length);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(recipes);
+    }
+
+    @Test
+    void readsEntriesWrittenAsJson() {
+        RecipeResponseDTO recipe = recipe("Pancakes", "flour");
+        byte[] json = new GenericJackson2JsonRedisSerializer().serialize(recipe);
+
+        assertThat(serializer.deserialize(json)).isEqualTo(recipe);
+    }
+
+    @Test
+    void handlesNullAndEmptyValues() {
+        assertThat(serializer.serialize(null)).isNull();
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+    }
+
+    @Test
+    void rejectsUnsupportedTypesAndCorruptPayloads() {
+        assertThatThrownBy(() -> serializer.serialize("not a recipe")).isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> serializer.deserialize(new byte[]{0x01, (byte) 0xff, 0x7f}))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> serializer.deserialize(new byte[]{(byte) 0x81, 0x01, 0x02}))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    private static RecipeResponseDTO recipe(String name, String ingredients) {
+        return new RecipeResponseDTO(UUID.randomUUID().toString(), name, ingredients, 15, 42);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.gateway.cache;
+
+import com.example.gateway.api.dto.RecipeCatalogDTO;
+import com.example.gateway.api.dto.RecipeResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeCatalogCacheTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, byte[]> redisTemplate;
+
+    private final RecipeCatalogCache cache = catalogCache(Duration.ofSeconds(10));
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void flush() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    @Test
+    void loadsAMissingCatalogOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<List<RecipeResponseDTO>>> loader = () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of(recipe("a", 1), recipe("b", 2)));
+        };
+
+        RecipeCatalogDTO first = cache.getAll(loader).join();
+        RecipeCatalogDTO second = cache.getAll(loader).join();
+
+        assertThat(ids(first)).containsExactlyInAnyOrder("a", "b");
+        assertThat(second.getVersion()).isEqualTo(first.getVersion()).isEqualTo(RecipeCatalogDTO.version(2, 2));
+        assertThat(cache.currentVersion()).isEqualTo(first.getVersion());
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void eventsPatchTheLoadedCatalog() {
+        load(cache, recipe("a", 1), recipe("b", 2));
+
+        cache.upsert(recipe("c", 3));
+        cache.upsert(recipe("a", 4));
+        cache.remove("b", 5);
+
+        RecipeCatalogDTO catalog = cached();
+        assertThat(catalog.getRecipes()).containsExactlyInAnyOrder(recipe("a", 4), recipe("c", 3));
+        assertThat(catalog.getVersion()).isEqualTo(RecipeCatalogDTO.version(5, 2));
+    }
+
+    @Test
+    void olderEventsDoNotUndoNewerOnes() {
+        load(cache, recipe("a", 1));
+
+        cache.upsert(recipe("a", 5));
+        cache.upsert(recipe("a", 3));
+        cache.remove("a", 4);
+        cache.remove("b", 7);
+        cache.upsert(recipe("b", 6));
+
+        assertThat(cached().getRecipes()).containsExactly(recipe("a", 5));
+    }
+
+    @Test
+    void eventsAppliedDuringALoadAreKeptOverItsOlderSnapshot() {
+        load(cache, recipe("a", 1), recipe("b", 2));
+        cache.invalidate();
+        CompletableFuture<List<RecipeResponseDTO>> pending = new CompletableFuture<>();
+
+        CompletableFuture<RecipeCatalogDTO> result = cache.getAll(() -> pending);
+        // Committed while the catalog is missing and the load is in flight
+        cache.upsert(recipe("a", 3));
+        cache.upsert(recipe("c", 4));
+        cache.remove("b", 5);
+        pending.complete(List.of(recipe("a", 1), recipe("b", 2)));
+
+        assertThat(result.join().getRecipes()).containsExactlyInAnyOrder(recipe("a", 3), recipe("c", 4));
+        assertThat(cached().getRecipes()).containsExactlyInAnyOrder(recipe("a", 3), recipe("c", 4));
+    }
+
+    @Test
+    void aLaggingLoadDoesNotDropRecentWritesNorRestoreDeletedRecipes() {
+        load(cache, recipe("a", 1), recipe("b", 2));
+        cache.upsert(recipe("c", 3));
+        cache.remove("b", 4);
+
+        // A snapshot from before both writes, as a lagging replica would return it
+        reload(cache, recipe("a", 1), recipe("b", 2));
+
+        assertThat(cached().getRecipes()).containsExactlyInAnyOrder(recipe("a", 1), recipe("c", 3));
+    }
+
+    @Test
+    void aLoadDropsRecipesMissingFromItOnceTheGracePeriodHasPassed() throws InterruptedException {
+        RecipeCatalogCache noGrace = catalogCache(Duration.ofMillis(50));
+        load(noGrace, recipe("a", 1), recipe("b", 2));
+        // Deleted, but its event never arrived
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        reload(noGrace, recipe("a", 1));
+
+        assertThat(cached().getRecipes()).containsExactly(recipe("a", 1));
+        assertThat(cached().getVersion()).isEqualTo(RecipeCatalogDTO.version(2, 1));
+    }
+
+    @Test
+    void theSweepCoversCatalogsLargerThanOneChunk() throws InterruptedException {
+        RecipeCatalogCache noGrace = catalogCache(Duration.ofMillis(50));
+        List<RecipeResponseDTO> recipes = IntStream.range(0, 1300).mapToObj(i -> recipe("r" + i, i + 1)).toList();
+        load(noGrace, recipes.toArray(RecipeResponseDTO[]::new));
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        // Every third recipe was deleted without its event arriving
+        List<RecipeResponseDTO> kept = recipes.stream().filter(recipe -> recipe.getVersion() % 3 != 0).toList();
+        reload(noGrace, kept.toArray(RecipeResponseDTO[]::new));
+
+        assertThat(cached().getRecipes()).containsExactlyInAnyOrderElementsOf(kept);
+        assertThat(redisTemplate.opsForHash().size("allRecipes:versions")).isEqualTo(kept.size());
+    }
+
+    @Test
+    void deleteMarkersArePrunedOnceALoadConfirmsTheDelete() throws InterruptedException {
+        RecipeCatalogCache noGrace = catalogCache(Duration.ofMillis(50));
+        load(noGrace, recipe("a", 1), recipe("b", 2));
+        noGrace.remove("b", 3);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        reload(noGrace, recipe("a", 1));
+
+        assertThat(redisTemplate.<String, byte[]>opsForHash().keys("allRecipes:versions")).containsExactly("a");
+        // Recreated under the same id, which a delete marker would have held back
+        reload(noGrace, recipe("a", 1), recipe("b", 4));
+        assertThat(cached().getRecipes()).containsExactlyInAnyOrder(recipe("a", 1), recipe("b", 4));
+    }
+
+    @Test
+    void freshReadsDoNotJoinALoadInFlight() {
+        CompletableFuture<List<RecipeResponseDTO>> pending = new CompletableFuture<>();
+        CompletableFuture<RecipeCatalogDTO> shared = cache.getAll(() -> pending);
+        cache.upsert(recipe("b", 2));
+
+        RecipeCatalogDTO fresh = cache.getAll(() -> CompletableFuture.completedFuture(
+                List.of(recipe("a", 1), recipe("b", 2))), true).join();
+        pending.complete(List.of(recipe("a", 1)));
+
+        assertThat(ids(fresh)).containsExactlyInAnyOrder("a", "b");
+        assertThat(ids(shared.join())).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void everyKeyExpires() {
+        load(cache, recipe("a", 1));
+        cache.remove("a", 2);
+
+        for (String key : List.of("allRecipes", "allRecipes:versions", "allRecipes:applied")) {
+            assertThat(redisTemplate.getExpire(key)).as(key).isPositive();
+        }
+    }
+
+    private static RecipeCatalogCache catalogCache(Duration loadGrace) {
+        return new RecipeCatalogCache(redisTemplate, new ProtobufRecipeRedisSerializer(1024), Duration.ofMinutes(10),
+                loadGrace, 0, new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+
+    private static void load(RecipeCatalogCache catalogCache, RecipeResponseDTO... recipes) {
+        catalogCache.getAll(() -> CompletableFuture.completedFuture(List.of(recipes))).join();
+    }
+
+    // Makes the next read load the catalog again, keeping the per-recipe versions invalidate() would drop
+    private static void reload(RecipeCatalogCache catalogCache, RecipeResponseDTO... recipes) {
+        redisTemplate.opsForHash().delete("allRecipes", "__loaded__");
+        load(catalogCache, recipes);
+    }
+
+    private RecipeCatalogDTO cached() {
+        return cache.getAll(() -> {
+            throw new AssertionError("Catalog should be cached");
+        }).join();
+    }
+
+    private static List<String> ids(RecipeCatalogDTO catalog) {
+        return catalog.getRecipes().stream().map(RecipeResponseDTO::getId).toList();
+    }
+
+    private static RecipeResponseDTO recipe(String id, long version) {
+        return new RecipeResponseDTO(id, "Recipe " + id, "flour", 10, version);
+    }
+}
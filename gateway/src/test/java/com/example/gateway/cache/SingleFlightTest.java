@@ -0,0 +1,126 @@
+package com.example.gateway.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "value";
+            })));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            // Give the followers time to join the load in flight
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failureIsSharedAndTheKeyIsReleased() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                loading.countDown();
+                await(release);
+                throw new IllegalStateException("boom");
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "other"));
+            Thread.sleep(100);
+            release.countDown();
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(singleFlight.execute("key", () -> "retried")).isEqualTo("retried");
+    }
+
+    @Test
+    void sequentialCallsLoadAgain() {
+        assertThat(singleFlight.execute("key", () -> "first")).isEqualTo("first");
+        assertThat(singleFlight.execute("key", () -> "second")).isEqualTo("second");
+        assertThat(singleFlight.execute("other", () -> "third")).isEqualTo("third");
+    }
+
+    @Test
+    void asyncCallersShareTheFutureUntilItCompletes() {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertThat(second).isSameAs(first).isNotDone();
+
+        load.complete("value");
+        assertThat(first.join()).isEqualTo("value");
+        assertThat(loads).hasValue(1);
+        assertThat(singleFlight.executeAsync("key", () -> CompletableFuture.completedFuture("next")).join())
+                .isEqualTo("next");
+    }
+
+    @Test
+    void asyncLoaderThatThrowsFailsTheFutureAndReleasesTheKey() {
+        CompletableFuture<String> failed = singleFlight.executeAsync("key", () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(singleFlight.executeAsync("key", () -> CompletableFuture.completedFuture("value")).join())
+                .isEqualTo("value");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TwoLevelCacheManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @ParameterizedTest
+    @CsvSource({
+            "cacheManager, cacheManager",
+            "recipesCacheManager, recipes",
+            "nearCache, nearCache"
+    })
+    @SuppressWarnings("unchecked")
+    void cacheMetricsAreTaggedWithTheBeanName(String beanName, String tag) {
+        RedisCacheWriter cacheWriter = mock(RedisCacheWriter.class);
+        when(cacheWriter.getCacheStatistics("recipes")).thenReturn(mock(CacheStatistics.class));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter).build();
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(redisCacheManager, mock(RedisTemplate.class),
+                mock(CacheInvalidationPublisher.class), meterRegistry, ObservationRegistry.NOOP, 100, Duration.ofMinutes(1));
+        cacheManager.setBeanName(beanName);
+
+        cacheManager.getCache("recipes");
+
+        assertThat(meterRegistry.get("cache.size").tags("cache", "recipes", "cache.manager", tag, "tier", "l1")
+                .gauge()).isNotNull();
+        assertThat(meterRegistry.get("cache.puts").tags("cache", "recipes", "cache.manager", tag, "tier", "l2")
+                .functionCounter()).isNotNull();
+    }
+}
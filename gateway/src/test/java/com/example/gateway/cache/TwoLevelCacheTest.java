@@ -0,0 +1,66 @@
+package com.example.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TwoLevelCacheTest {
+
+    private final ConcurrentMapCache remote = new ConcurrentMapCache("recipes");
+    private final TwoLevelCache cache = new TwoLevelCache("recipes",
+            Caffeine.newBuilder().<String, Cache.ValueWrapper>build(), remote,
+            mock(CacheInvalidationPublisher.class), null, new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+
+    @Test
+    void getServesTheLocalCopyUntilItIsInvalidated() {
+        cache.put("1", "v1");
+        // Another instance wrote L2; its invalidation has not arrived here yet
+        remote.put("1", "v2");
+
+        assertThat(cache.get("1").get()).isEqualTo("v1");
+    }
+
+    @Test
+    void getFreshReadsL2AndRefreshesTheLocalCopy() {
+        cache.put("1", "v1");
+        remote.put("1", "v2");
+
+        assertThat(cache.getFresh("1").get()).isEqualTo("v2");
+        assertThat(cache.get("1").get()).isEqualTo("v2");
+    }
+
+    @Test
+    void getFreshDropsALocalCopyThatL2NoLongerHas() {
+        cache.put("1", "v1");
+        remote.evict("1");
+
+        assertThat(cache.getFresh("1")).isNull();
+        assertThat(cache.getLocalCache().getIfPresent("1")).isNull();
+    }
+
+    @Test
+    void freshGetAllSkipsL1() {
+        cache.put("1", "v1");
+        cache.put("2", "v1");
+        remote.put("1", "v2");
+        remote.evict("2");
+        // A tombstone
+        remote.put("3", null);
+
+        assertThat(cache.getAll(List.of("1", "2"))).containsExactly(Map.entry("1", "v1"), Map.entry("2", "v1"));
+        Map<String, Object> fresh = cache.getAll(List.of("1", "2", "3"), true);
+        assertThat(fresh).containsOnlyKeys("1", "3");
+        assertThat(fresh.get("1")).isEqualTo("v2");
+        assertThat(fresh.get("3")).isNull();
+        assertThat(cache.getLocalCache().getIfPresent("2")).isNull();
+    }
+}
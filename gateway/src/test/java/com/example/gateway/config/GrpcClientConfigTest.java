@@ -0,0 +1,20 @@
+package com.example.gateway.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrpcClientConfigTest {
+
+    @Test
+    void formatsServiceConfigDurationsInPlainSeconds() {
+        assertThat(GrpcClientConfig.seconds(Duration.ofSeconds(30))).isEqualTo("30s");
+        assertThat(GrpcClientConfig.seconds(Duration.ofMillis(50))).isEqualTo("0.05s");
+        assertThat(GrpcClientConfig.seconds(Duration.ofMillis(1500))).isEqualTo("1.5s");
+        assertThat(GrpcClientConfig.seconds(Duration.ofNanos(500_000))).isEqualTo("0.0005s");
+        assertThat(GrpcClientConfig.seconds(Duration.ofNanos(1))).isEqualTo("0.000000001s");
+        assertThat(GrpcClientConfig.seconds(Duration.ZERO)).isEqualTo("0s");
+    }
+}
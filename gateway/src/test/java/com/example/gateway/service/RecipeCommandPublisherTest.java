@@ -0,0 +1,153 @@
+package com.example.gateway.service;
+
+import com.example.gateway.config.RabbitMQConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The confirm window against a mocked template whose confirms the tests complete by hand.
+ */
+class RecipeCommandPublisherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final List<CorrelationData> sent = new ArrayList<>();
+
+    RecipeCommandPublisherTest() {
+        doAnswer(invocation -> sent.add(invocation.getArgument(3)))
+                .when(rabbitTemplate).send(eq(RabbitMQConfig.recipeCommandExchangeName), anyString(), any(Message.class),
+                        any(CorrelationData.class));
+    }
+
+    @Test
+    void anAckCompletesThePublishAndFreesItsSlot() {
+        RecipeCommandPublisher publisher = publisher(2, Duration.ofSeconds(5));
+
+        CompletableFuture<Void> first = publisher.publish("recipe.command.0", message());
+        CompletableFuture<Void> second = publisher.publish("recipe.command.1", message());
+        assertThat(outstanding()).isEqualTo(2);
+
+        confirm(0, true);
+        assertThat(first).isCompleted();
+        assertThat(second).isNotDone();
+        assertThat(outstanding()).isEqualTo(1);
+        confirm(1, true);
+
+        assertThat(outstanding()).isZero();
+        assertThat(published("ack")).isEqualTo(2);
+        assertThat(sent.get(0).getId()).isNotEqualTo(sent.get(1).getId());
+    }
+
+    @Test
+    void aNackFailsThePublishAndFreesItsSlot() {
+        RecipeCommandPublisher publisher = publisher(1, Duration.ofSeconds(5));
+
+        CompletableFuture<Void> result = publisher.publish("recipe.command.0", message());
+        confirm(0, false);
+
+        assertThatThrownBy(result::join).cause().isInstanceOf(CommandPublishException.class);
+        assertThat(outstanding()).isZero();
+        assertThat(published("nack")).isEqualTo(1);
+    }
+
+    @Test
+    void anUnroutableCommandFailsEvenThoughItIsAcked() {
+        RecipeCommandPublisher publisher = publisher(1, Duration.ofSeconds(5));
+
+        CompletableFuture<Void> result = publisher.publish("recipe.command.9", message());
+        // The broker returns the message before it confirms it
+        sent.get(0).setReturned(new ReturnedMessage(message(), 312, "NO_ROUTE",
+                RabbitMQConfig.recipeCommandExchangeName, "recipe.command.9"));
+        confirm(0, true);
+
+        assertThatThrownBy(result::join).cause().isInstanceOf(CommandPublishException.class)
+                .hasMessageContaining("routed");
+        assertThat(outstanding()).isZero();
+        assertThat(published("returned")).isEqualTo(1);
+    }
+
+    @Test
+    void aMissingConfirmTimesOutAndFreesItsSlot() {
+        RecipeCommandPublisher publisher = publisher(1, Duration.ofMillis(50));
+
+        CompletableFuture<Void> result = publisher.publish("recipe.command.0", message());
+
+        assertThatThrownBy(result::join).isInstanceOf(CompletionException.class)
+                .cause().isInstanceOf(CommandPublishException.class).hasMessageContaining("not confirmed within");
+        assertThat(outstanding()).isZero();
+        assertThat(published("timeout")).isEqualTo(1);
+        // The slot can be taken again
+        publisher.publish("recipe.command.0", message());
+        assertThat(outstanding()).isEqualTo(1);
+    }
+
+    @Test
+    void aFailedSendFreesItsSlot() {
+        RecipeCommandPublisher publisher = publisher(1, Duration.ofSeconds(5));
+        doThrow(new AmqpConnectException(new ConnectException("connection refused")))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+
+        assertThatThrownBy(() -> publisher.publish("recipe.command.0", message()))
+                .isInstanceOf(AmqpConnectException.class);
+        assertThat(outstanding()).isZero();
+    }
+
+    @Test
+    void aFullWindowRefusesFurtherCommandsUntilOneIsConfirmed() {
+        RecipeCommandPublisher publisher = publisher(1, Duration.ofSeconds(5));
+        publisher.publish("recipe.command.0", message());
+
+        assertThatThrownBy(() -> publisher.publish("recipe.command.1", message()))
+                .isInstanceOf(CommandBackpressureException.class);
+        assertThat(published("backpressure")).isEqualTo(1);
+        assertThat(sent).hasSize(1);
+
+        confirm(0, true);
+        publisher.publish("recipe.command.1", message());
+        confirm(1, true);
+        assertThat(outstanding()).isZero();
+    }
+
+    private RecipeCommandPublisher publisher(int maxOutstanding, Duration confirmTimeout) {
+        return new RecipeCommandPublisher(rabbitTemplate, meterRegistry, maxOutstanding, Duration.ofMillis(10),
+                confirmTimeout);
+    }
+
+    private void confirm(int index, boolean ack) {
+        sent.get(index).getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "queue full"));
+    }
+
+    private double outstanding() {
+        return meterRegistry.get("recipe.commands.publish.outstanding").gauge().value();
+    }
+
+    private double published(String result) {
+        return meterRegistry.get("recipe.commands.publish").tag("result", result).counter().count();
+    }
+
+    private static Message message() {
+        return new Message(new byte[]{1}, new MessageProperties());
+    }
+}
@@ -0,0 +1,12 @@
+#!/bin/bash
+# Hot standby of the postgres service: cloned with pg_basebackup on first start, then streams WAL from it
+set -e
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+  until pg_basebackup -h postgres -U replicator -D "$PGDATA" -R -X stream; do
+    echo "Waiting for the primary to accept replication connections..."
+    rm -rf "${PGDATA:?}"/*
+    sleep 2
+  done
+  chmod 0700 "$PGDATA"
+fi
+exec postgres -c hot_standby=on